@@ -0,0 +1,81 @@
+package mp.app;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generator of synthetic basket and feed files used by the benchmarks.
+ * 
+ * Basket of size n references quotes SYM.0 .. SYM.(n-1),
+ * the feed contains exactly those quotes.
+ */
+public class BenchmarkData {
+
+	final Path dir;
+
+	final Path basket;
+
+	final Path feed;
+
+	/**
+	 * Creates basket and feed files of given size in a temporary directory
+	 * 
+	 * @param size	number of assets (and quotes)
+	 * @throws IOException
+	 */
+	public BenchmarkData(int size) throws IOException {
+		dir = Files.createTempDirectory("basketpricer-jmh");
+		basket = dir.resolve("bench." + BasketPricer.FILE_SUFFIX_BASKET);
+		feed = dir.resolve("bench." + BasketPricer.FILE_SUFFIX_MKDATA);
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(basket))) {
+			out.println("# Syntax: quote_name quantity full_name");
+			for (int i = 0; i < size; i++) {
+				out.println(quoteName(i) + "\t" + quantity(i) + "\t" + "Asset" + i);
+			}
+		}
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(feed))) {
+			out.println("# Syntax: quote_name quote_value");
+			for (int i = 0; i < size; i++) {
+				out.println(quoteName(i) + "\t" + price(i));
+			}
+		}
+	}
+
+	public Path getBasket() {
+		return basket;
+	}
+
+	public Path getFeed() {
+		return feed;
+	}
+
+	/**
+	 * Removes generated files
+	 * 
+	 * @throws IOException
+	 */
+	public void delete() throws IOException {
+		try (Stream<Path> stream = Files.walk(dir)) {
+			stream.sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+		}
+	}
+
+	static String quoteName(int i) {
+		return "SYM." + i;
+	}
+
+	static double quantity(int i) {
+		return 1 + (i % 1000) / 8d;
+	}
+
+	static double price(int i) {
+		return 10 + (i % 997) * 0.37;
+	}
+}
@@ -0,0 +1,97 @@
+package mp.app;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mp.app.marketdata.MarketData;
+import mp.app.marketdata.OffHeapMarketData;
+import mp.app.marketdata.QuoteValue;
+
+/**
+ * Footprint of long-lived market data, compares quotes held in a
+ * <code>HashMap&lt;String, QuoteValue&gt;</code> with {@link OffHeapMarketData}.
+ *
+ * The heap used with the market data live is printed at setup, the <code>fullGc</code>
+ * benchmark measures pauses of full collections with the market data live,
+ * <code>getPrice</code> measures the lookup cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class FootprintBenchmark {
+
+	@Param({ "100000", "1000000", "4000000" })
+	int size;
+
+	@Param({ "heap", "offheap" })
+	String store;
+
+	MarketData md;
+
+	int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Map<String, QuoteValue> quotes = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String name = BenchmarkData.quoteName(i);
+			quotes.put(name, new QuoteValue(name, BenchmarkData.price(i)));
+		}
+		md = "offheap".equals(store)
+			? OffHeapMarketData.copyOf(Utils.of(quotes))
+			: Utils.of(quotes);
+		quotes = null;
+
+		System.out.println();
+		System.out.println("Used heap (" + store + ", " + size + " quotes): " + (usedHeap() >> 10) + " KB"
+			+ ("offheap".equals(store) ? ", off-heap: " + (((OffHeapMarketData) md).getCapacity() >> 10) + " KB" : ""));
+	}
+
+	static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (md instanceof OffHeapMarketData) {
+			((OffHeapMarketData) md).close();
+		}
+	}
+
+	@Benchmark
+	public void fullGc() {
+		System.gc();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public double getPrice() {
+		int i = next;
+		next = i + 1 < size ? i + 1 : 0;
+		return md.getPrice(BenchmarkData.quoteName(i));
+	}
+}
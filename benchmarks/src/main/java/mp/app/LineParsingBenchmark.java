@@ -0,0 +1,41 @@
+package mp.app;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mp.app.marketdata.QuoteValue;
+
+/**
+ * Parsing of single basket and feed lines
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineParsingBenchmark {
+
+	String quoteLine = "FRUIT.BANA	3.5";
+
+	String assetLine = "FRUIT.BANA	11.001	Bananas";
+
+	@Benchmark
+	public QuoteValue quoteValueParse() {
+		return QuoteValue.parse(quoteLine);
+	}
+
+	@Benchmark
+	public Asset assetParse() throws Exception {
+		return Asset.parse(assetLine);
+	}
+}
@@ -0,0 +1,63 @@
+package mp.app;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mp.app.marketdata.MarketData;
+
+/**
+ * Loading of whole basket and feed files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	int size;
+
+	BenchmarkData data;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		data = new BenchmarkData(size);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	@Benchmark
+	public Set<Asset> getBasket() {
+		return Utils.getBasket(data.getBasket());
+	}
+
+	@Benchmark
+	public MarketData getMarketDataWithLock() {
+		return Utils.getMarketDataWithLock(data.getFeed());
+	}
+
+	@Benchmark
+	public MarketData getMarketDataMappedWithLock() {
+		return Utils.getMarketDataMappedWithLock(data.getFeed());
+	}
+}
@@ -0,0 +1,104 @@
+package mp.app;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+import mp.app.measure.PriceMeasure;
+
+/**
+ * Pricing stage, compares the planned execution of 
+ * {@link BasketPricer#valuate(Set, MarketData, Measure)} with a parallel stream,
+ * a plain loop and with the columnar batch valuation of a compiled basket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricingBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	int size;
+
+	BasketPricer pricer = new BasketPricer();
+
+	Measure measure = new PriceMeasure();
+
+	Set<Asset> basket;
+
+	MarketData md;
+
+	CompiledBasket compiled;
+
+	ArrayMarketData arrayMd;
+
+	double[] values;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchmarkData data = new BenchmarkData(size);
+		basket = Utils.getBasket(data.getBasket());
+		md = Utils.getMarketDataWithLock(data.getFeed());
+		compiled = new CompiledBasket(basket);
+		arrayMd = Utils.getMarketDataMappedWithLock(data.getFeed(), null);
+		values = new double[compiled.size()];
+		data.delete();
+	}
+
+	@Benchmark
+	public Map<Asset, Double> valuatePlanned() {
+		return pricer.valuate(basket, md, measure);
+	}
+
+	@Benchmark
+	public Map<Asset, Double> valuateParallelStream() {
+		return basket
+			.parallelStream()
+			.collect(Collectors.toConcurrentMap(Function.identity(), a -> measure.calculate(a, md)));
+	}
+
+	@Benchmark
+	public Map<Asset, Double> valuatePlainLoop() {
+		Map<Asset, Double> map = new HashMap<>(basket.size() * 2);
+		for (Asset a : basket) {
+			map.put(a, measure.calculate(a, md));
+		}
+		return map;
+	}
+
+	@Benchmark
+	public double[] valuateCompiledBatch() {
+		return compiled.valuate(arrayMd, measure, values);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		basket = null;
+		md = null;
+		compiled = null;
+		arrayMd = null;
+	}
+}
@@ -0,0 +1,89 @@
+package mp.app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import mp.app.measure.PriceMeasure;
+
+/**
+ * Report rendering of a valuated basket
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	int size;
+
+	BasketPricer pricer = new BasketPricer();
+
+	List<Map.Entry<Asset, Double>> entries;
+
+	DoubleSummaryStatistics stats;
+
+	ReportRenderer renderer = new ReportRenderer(new PrintStream(new OutputStream() {
+		public void write(int b) {}
+
+		public void write(byte[] b, int off, int len) {}
+	}), BasketPricer.REPORT_NUMBERS_FORMAT);
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchmarkData data = new BenchmarkData(size);
+		Map<Asset, Double> map = pricer.valuate(
+			Utils.getBasket(data.getBasket()), 
+			Utils.getMarketDataWithLock(data.getFeed()), 
+			new PriceMeasure());
+		data.delete();
+
+		entries = new ArrayList<>(map.entrySet());
+		stats = map.values()
+			.stream()
+			.mapToDouble(Double::doubleValue)
+			.summaryStatistics();
+	}
+
+	@Benchmark
+	public void renderLines(Blackhole bh) {
+		for (Map.Entry<Asset, Double> e : entries) {
+			bh.consume(pricer.renderLine(e));
+		}
+	}
+
+	@Benchmark
+	public void renderBlocks() {
+		for (Map.Entry<Asset, Double> e : entries) {
+			pricer.renderLine(renderer, e).newLine();
+		}
+		renderer.flush();
+	}
+
+	@Benchmark
+	public String renderTotals() {
+		return pricer.renderTotals(stats);
+	}
+}
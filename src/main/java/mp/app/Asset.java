@@ -1,5 +1,7 @@
 package mp.app;
 
+import mp.app.marketdata.SymbolTable;
+
 /**
  * Resembles an asset in basket
  */
@@ -8,6 +10,8 @@ public class Asset {
 	String name;
 
 	String quoteName;
+
+	int quoteId;
 		
 	double quantity;
 	
@@ -19,8 +23,20 @@ public class Asset {
 	 * @param quantity	number of assets of that type in basket
 	 */
 	public Asset(String name, String quoteName, double quantity) {
+		this(name, SymbolTable.get().idOf(quoteName), quantity);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param name	asset's name
+	 * @param quoteId	symbol ID of the quote name, see {@link SymbolTable}
+	 * @param quantity	number of assets of that type in basket
+	 */
+	public Asset(String name, int quoteId, double quantity) {
 		this.name = name;
-		this.quoteName = quoteName;
+		this.quoteId = quoteId;
+		this.quoteName = SymbolTable.get().nameOf(quoteId);
 		this.quantity = quantity;
 	}
 
@@ -32,6 +48,10 @@ public class Asset {
 		return quoteName;
 	}
 
+	public int getQuoteId() {
+		return quoteId;
+	}
+
 	public double getQuantity() {
 		return quantity;
 	}
@@ -51,8 +71,10 @@ public class Asset {
 	 */
 	public static Asset parse(String str) throws Exception {
 		try {
-			String[] ts = str.split("\\s+");
-			return new Asset(ts[2], ts[0], Double.parseDouble(ts[1]));
+			// quote name is looked up in place, tokens of the rest are as of str.split("\\s+")
+			int nameEnd = SymbolTable.nameEnd(str);
+			String[] ts = str.substring(nameEnd).split("\\s+");
+			return new Asset(ts[2], SymbolTable.get().idOf(str, 0, nameEnd), Double.parseDouble(ts[1]));
 		} catch (Exception e) {
 			throw new Exception("Parsing bucket component failed: " + str);
 		}
@@ -3,7 +3,7 @@ package mp.app;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
-import static java.util.stream.Collectors.toConcurrentMap;
+import static java.util.stream.Collectors.toList;
 
 import java.io.PrintStream;
 import java.nio.file.FileSystems;
@@ -14,21 +14,36 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.ByteBufferMarketData;
+import mp.app.marketdata.IndexedMarketData;
 import mp.app.marketdata.MarketData;
+import mp.app.marketdata.SharedMarketData;
+import mp.app.marketdata.SharedSegment;
+import mp.app.marketdata.SymbolIndex;
 import mp.app.measure.Measure;
 import mp.app.measure.PriceMeasure;
+import mp.app.metrics.Latency;
+import mp.app.metrics.PipelineMetrics;
+import mp.app.metrics.Stage;
 
 /**
  * Simple pricing for a basket of assets.
@@ -38,31 +53,221 @@ import mp.app.measure.PriceMeasure;
  */
 public class BasketPricer {
 
-	static final NumberFormat REPORT_NUMBERS_FORMAT = new DecimalFormat("#,###,##0.00");
+	static final DecimalFormat REPORT_NUMBERS_FORMAT = new DecimalFormat("#,###,##0.00");
 
 	static final String PARAM_FOLLOW = "-follow";
 	
+	static final String PARAM_MMAP = "-mmap";
+	
+	static final String PARAM_INCREMENTAL = "-incremental";
+	
+	static final String PARAM_JOURNAL = "-journal";
+	
+	static final String PARAM_ATOMIC = "-atomic";
+	
+	static final String PARAM_DEBOUNCE = "-debounce";
+	
+	static final String PARAM_METRICS = "-metrics";
+	
+	static final String PARAM_PARALLEL = "-parallel";
+	
+	static final String PARAM_STREAM = "-stream";
+	
+	static final String PARAM_NOSORT = "-nosort";
+	
+	static final String PARAM_CACHE = "-cache";
+	
+	static final String PARAM_THREADS = "-threads";
+
+	static final String PARAM_BATCH = "-batch";
+	
+	/**
+	 * Interval of polling the shared memory segment for updates in continuous mode,
+	 * doubled up to {@link #SHARED_POLL_MAX_MILLIS} while the segment is not updated
+	 */
+	static final long SHARED_POLL_MIN_MILLIS = 1;
+	
+	static final long SHARED_POLL_MAX_MILLIS = 64;
+	
 	static final String FILE_SUFFIX_BASKET = "basket";
 
 	static final String FILE_SUFFIX_MKDATA = "feed";
 
 	static final String USAGE = 
-			"Usage: java " + BasketPricer.class.getName() + " [" + PARAM_FOLLOW + "]" + " basket_name" + "\n"
-		+	"   or: java " + BasketPricer.class.getName() + " [" + PARAM_FOLLOW + "]" + " basket_file marketdata_file" + "\n"
+			"Usage: java " + BasketPricer.class.getName() + " [-options]" + " basket_name" + "\n"
+		+	"   or: java " + BasketPricer.class.getName() + " [-options]" + " basket_file marketdata_file" + "\n"
+		+	"   or: java " + BasketPricer.class.getName() + " [-options]" + " -batch manifest_file|basket_glob" + "\n"
 		+	"\n"		
 		+	"Parameters:" + "\n"
 		+	"   basket_name      basket definition and market data file will be expected in <current_dir>/<basket_name>." + FILE_SUFFIX_BASKET + "\n"
 		+	"                    and <current_dir>/<basket_name>." + FILE_SUFFIX_MKDATA + "\n"
 		+	"   basket_file      basket definition file" + "\n"
 		+	"   marketdata_file  market data file" + "\n"
+		+	"   manifest_file    batch of valuations, one per line: basket_name or basket_file marketdata_file [report_file]," + "\n"
+		+	"                    reports are written to <basket_name>." + BatchValuation.FILE_SUFFIX_REPORT + " unless given, followed by a summary" + "\n"
+		+	"   basket_glob      batch of basket files, e.g. 'examples/*." + FILE_SUFFIX_BASKET + "', each with the market data file of the same name" + "\n"
 		+	"\n"
 		+	"Options:" + "\n"
 		+	"   -follow          continuous mode, program run infinitely and listens for updates of basket and marketdata files," + "\n"
 		+	"                    when update detected, the basket will get revaluated." + "\n"
+		+	"   -debounce <ms>   in continuous mode, changes within the window (default 100ms) are coalesced into one valuation" + "\n"
+		+	"   -metrics <s>     print pipeline metrics every s seconds, metrics are also exposed as MBean " + PipelineMetrics.OBJECT_NAME + "\n"
+		+	"   -threads <n>     assets are priced by a dedicated pool of n threads instead of the common fork-join pool" + "\n"
+		+	"   -cache <n>       results of up to n valuations are cached by versions of basket and market data files" + "\n"
+		+	"   -incremental     in continuous mode reprice only assets whose quotes changed and report them with updated totals" + "\n"
+		+	"   -mmap            market data file is memory-mapped and parsed directly from the mapped buffer" + "\n"
+		+	"   -journal         market data file is replayed together with its tick journal <marketdata_file>." + TickJournal.FILE_SUFFIX_JOURNAL + "\n"
+		+	"   -stream          basket file is valuated while reading, without holding the basket in memory," + "\n"
+		+	"                    the report is sorted by an external merge sort using temporary files" + "\n"
+		+	"   -nosort          with -stream, assets are reported in basket file order, no sorting is done" + "\n"
+		+	"   -parallel        basket and market data files are split into ranges parsed in parallel, for very large files" + "\n"
+		+	"   -atomic          market data file is read without locking, it has to be published by atomic rename (feed's -atomic)" + "\n"
+		+	"   -format <format> market data file format: text (default), binary or shared, binary snapshot of basket_name" + "\n"
+		+	"                    will be expected in <current_dir>/<basket_name>." + MarketDataFormat.BINARY.getSuffix() + ", shared memory segment" + "\n"
+		+	"                    in <current_dir>/<basket_name>." + MarketDataFormat.SHARED.getSuffix() + ", the latter is polled for updates in continuous mode" + "\n"
 		;
 
+	/**
+	 * Market data file is read via memory-mapped parser
+	 */
+	boolean mapped = false;
+
+	/**
+	 * Continuous mode reprices only assets with changed quotes
+	 */
+	boolean incremental = false;
+
+	/**
+	 * Basket and market data of the initial valuation in incremental mode,
+	 * they seed the incremental state of continuous mode instead of reloading the files
+	 */
+	Set<Asset> seedBasket;
+
+	MarketData seedMarketData;
+
+	/**
+	 * Format of the market data file
+	 */
+	MarketDataFormat format = MarketDataFormat.TEXT;
+
+	/**
+	 * Market data file is accompanied by a tick journal
+	 */
+	boolean journaled = false;
+
+	/**
+	 * Market data file is published by atomic rename and read without locking
+	 */
+	boolean atomic = false;
+
+	/**
+	 * Basket and text market data files are parsed in parallel ranges
+	 */
+	boolean parallel = false;
+
+	/**
+	 * Basket is valuated while reading, see {@link StreamingValuation}
+	 */
+	boolean streaming = false;
+
+	/**
+	 * Streamed valuation is reported sorted by asset names
+	 */
+	boolean sorted = true;
+
+	/**
+	 * Results of full valuations, null when caching is disabled
+	 */
+	ValuationCache cache;
+
+	/**
+	 * Content versions of watched files in continuous mode
+	 */
+	final ChangeDetector changes = new ChangeDetector();
+
+	/**
+	 * Execution strategy of pricing
+	 */
+	final ExecutionPlanner planner;
+
+	/**
+	 * Debounce window of continuous mode in milliseconds
+	 */
+	long debounce = 100;
+
+	/**
+	 * Basket compiled against the market data layout, 
+	 * reused as long as the basket file does not change
+	 */
+	CompiledBasket compiled;
+
+	/**
+	 * Symbol layout of the last loaded market data
+	 */
+	SymbolIndex layout;
+
+	/**
+	 * Shared memory segment, in shared format
+	 */
+	volatile SharedMarketData shared;
+
+	/**
+	 * Path of the open shared segment
+	 */
+	volatile Path sharedPath;
+
+	/**
+	 * Update counter of the shared segment at the last load
+	 */
+	volatile long sharedUpdates = -1;
+
+	/**
+	 * Tick latencies are recorded, set in continuous mode
+	 */
+	boolean traceLatency = false;
+
+	/*
+	 * Tick time of the last loaded market data (microseconds since epoch, -1 when unknown),
+	 * tick time of the last recorded latency sample and stage durations of the last valuation
+	 */
+	long tickMicros = -1;
+
+	long recordedTickMicros = -1;
+
+	long loadNanos;
+
+	long pricingNanos;
+
+	long renderingNanos;
+
+	public BasketPricer() {
+		this(new ExecutionPlanner());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param planner	execution planner of pricing, e.g. with a dedicated pool
+	 */
+	public BasketPricer(ExecutionPlanner planner) {
+		this.planner = planner;
+	}
+
 	public static void main(String[] args) {
 		boolean isFollow = false;
+		boolean isMapped = false;
+		boolean isIncremental = false;
+		boolean isJournaled = false;
+		boolean isAtomic = false;
+		boolean isParallel = false;
+		boolean isStreaming = false;
+		boolean isUnsorted = false;
+		long debounce = 100;
+		int metrics = 0;
+		int cache = 0;
+		int threads = 0;
+		String batch = null;
+		MarketDataFormat format = null;
 		Path basket = null;
 		Path mkdata = null;
 
@@ -71,12 +276,79 @@ public class BasketPricer {
 		 */
 		List<String> list = new ArrayList<>(Arrays.asList(args));
 		isFollow = list.remove(PARAM_FOLLOW);
+		isMapped = list.remove(PARAM_MMAP);
+		isIncremental = list.remove(PARAM_INCREMENTAL);
+		isJournaled = list.remove(PARAM_JOURNAL);
+		isAtomic = list.remove(PARAM_ATOMIC);
+		isParallel = list.remove(PARAM_PARALLEL);
+		isStreaming = list.remove(PARAM_STREAM);
+		isUnsorted = list.remove(PARAM_NOSORT);
+		try {
+			format = MarketDataFormat.parse(list);
+		} catch (IllegalArgumentException e) {
+			list.clear();
+		}
+		
+		int i = list.indexOf(PARAM_DEBOUNCE);
+		if (i >= 0) {
+			try {
+				debounce = Long.parseLong(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);
+			} catch (Exception e) {
+				list.clear();
+			}
+		}
+		
+		i = list.indexOf(PARAM_METRICS);
+		if (i >= 0) {
+			try {
+				metrics = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);
+			} catch (Exception e) {
+				list.clear();
+			}
+		}
+		
+		i = list.indexOf(PARAM_CACHE);
+		if (i >= 0) {
+			try {
+				cache = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);
+			} catch (Exception e) {
+				list.clear();
+			}
+		}
+		
+		i = list.indexOf(PARAM_THREADS);
+		if (i >= 0) {
+			try {
+				threads = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);
+			} catch (Exception e) {
+				list.clear();
+			}
+		}
+		
+		i = list.indexOf(PARAM_BATCH);
+		if (i >= 0) {
+			try {
+				batch = list.get(i + 1);
+				list.remove(i + 1);
+				list.remove(i);
+			} catch (Exception e) {
+				list.clear();
+			}
+		}
 		
 		switch (list.size()) {
 			case 1:
 				String str = list.get(0);
 				basket = Paths.get(str + "." + FILE_SUFFIX_BASKET);
-				mkdata = Paths.get(str + "." + FILE_SUFFIX_MKDATA);
+				mkdata = Paths.get(str + "." + format.getSuffix());
 				break;
 				
 			case 2:
@@ -88,10 +360,34 @@ public class BasketPricer {
 		 * End of parsing input parameters
 		 */
 		
-		if (basket == null || mkdata == null) {
+		boolean isValid = batch != null
+			? list.isEmpty() && !isFollow
+			: basket != null && mkdata != null;
+		if (!isValid) {
 			System.out.println(USAGE);
 		} else {
-			BasketPricer bp = new BasketPricer();
+			BasketPricer bp = threads > 0
+				? new BasketPricer(new ExecutionPlanner(new ForkJoinPool(threads)))
+				: new BasketPricer();
+			bp.mapped = isMapped;
+			bp.incremental = isIncremental;
+			bp.format = format;
+			bp.journaled = isJournaled;
+			bp.atomic = isAtomic;
+			bp.parallel = isParallel;
+			bp.streaming = isStreaming;
+			bp.sorted = !isUnsorted;
+			bp.debounce = debounce;
+			if (cache > 0) {
+				bp.cache = new ValuationCache(cache);
+			}
+			if (metrics > 0) {
+				PipelineMetrics.get().dumpEvery(System.out, metrics);
+			}
+			if (batch != null) {
+				bp.valuateBatch(batch, System.out);
+				return;
+			}
 			bp.valuate(basket, mkdata, System.out);
 			if (isFollow) {
 				bp.startService(basket, mkdata, System.out);
@@ -99,6 +395,24 @@ public class BasketPricer {
 		}
 	}
 
+	/**
+	 * Valuates a batch of baskets in this JVM, see {@link BatchValuation}
+	 * 
+	 * @param batch	manifest file or glob of basket files
+	 * @param out	output stream of the summary
+	 * @return	valuation totals by item, empty when the batch cannot be read
+	 */
+	public double[] valuateBatch(String batch, PrintStream out) {
+		List<BatchValuation.Item> items;
+		try {
+			items = BatchValuation.getItems(batch, format);
+		} catch (Exception e) {
+			System.err.println(e);
+			return new double[0];
+		}
+		return new BatchValuation(this).valuate(items, out);
+	}
+
 	/**
 	 * Entry point to basket valuation
 	 * 
@@ -108,8 +422,24 @@ public class BasketPricer {
 	 * @return	valuation totals
 	 */
 	public double valuate(Path basketDef, Path marketData, PrintStream out) {
-		Set<Asset> basket = Utils.getBasket(basketDef);
-		MarketData md = Utils.getMarketDataWithLock(marketData);
+		return valuate(basketDef, marketData, this::loadMarketData, out);
+	}
+
+	/**
+	 * Basket valuation with market data supplied by the loader, e.g. shared by the items of a batch
+	 * 
+	 * @param basketDef		path to file containing basket definition
+	 * @param marketData	path to file containing market data (quotes)
+	 * @param loader	market data loader, called unless the result is cached
+	 * @param out	output stream
+	 * @return	valuation totals
+	 */
+	double valuate(Path basketDef, Path marketData, Function<Path, MarketData> loader, PrintStream out) {
+		List<ValuationCache.Fingerprint> key = cache != null && !streaming 
+			? getCacheKey(basketDef, marketData) 
+			: null;
+		ValuationCache.Result cached = key != null ? cache.get(key) : null;
+		MarketData md = cached == null ? loader.apply(marketData) : null;
 		Measure measure = new PriceMeasure();
 
 		/*
@@ -121,35 +451,156 @@ public class BasketPricer {
 		out.println("Market data file:       " + marketData);
 		out.println();
 		
+		if (streaming) {
+			return valuateStreaming(basketDef, md, measure, out);
+		}
+		
 		/*
 		 * Pricing
 		 */
-		Map<Asset, Double> map = valuate(basket, md, measure);
+		PipelineMetrics metrics = PipelineMetrics.get();
+		metrics.incrementValuations();
+		long start = metrics.start();
+		ValuationCache.Result result = cached;
+		if (result == null) {
+			Map<Asset, Double> map = md instanceof IndexedMarketData
+				? valuate(getCompiledBasket(basketDef), (IndexedMarketData) md, measure)
+				: valuate(getBasket(basketDef), md, measure);
+			result = new ValuationCache.Result(map);
+			if (key != null) {
+				cache.put(key, result);
+			}
+		}
+		pricingNanos = metrics.record(Stage.PRICING, start);
+		if (incremental) {
+			seedBasket = new HashSet<>();
+			result.getEntries().forEach(e -> seedBasket.add(e.getKey()));
+			seedMarketData = md;
+		}
 
 		/*
 		 * Reporting
 		 */
-		// list of basket components		
-		map.entrySet()
-			.stream()
-			.sorted((a, b) -> a.getKey().getName().compareTo(b.getKey().getName()))
-			.map(this::renderLine)
-			.forEach(out::println);
+		start = metrics.start();
+		ReportRenderer renderer = new ReportRenderer(out, REPORT_NUMBERS_FORMAT);
+		for (Map.Entry<Asset, Double> e : result.getEntries()) {
+			renderLine(renderer, e).newLine();
+		}
+		renderer.flush();
 
 		// bottom line
-		DoubleSummaryStatistics stats = map.values()
-			.parallelStream()
-			.mapToDouble(Double::doubleValue)
-			.summaryStatistics();
+		out.println("----");
+		out.println(renderTotals(result.getStats()));
+		out.println();
+		renderingNanos = metrics.record(Stage.RENDERING, start);
+		metrics.addNanPricedAssets(result.getNanCount());
+		
+		return result.getStats().getSum();
+	}
+
+	/**
+	 * Versions of the files of a valuation
+	 * 
+	 * @param basketDef		path to file containing basket definition
+	 * @param marketData	path to file containing market data (quotes)
+	 * @return	cache key or null when the market data has no file version (shared memory)
+	 * 			or a file cannot be read
+	 */
+	List<ValuationCache.Fingerprint> getCacheKey(Path basketDef, Path marketData) {
+		if (format == MarketDataFormat.SHARED) {
+			// updated in place
+			return null;
+		}
+		return journaled
+			? ValuationCache.keyOf(basketDef, marketData, TickJournal.journalOf(marketData))
+			: ValuationCache.keyOf(basketDef, marketData);
+	}
+
+	/**
+	 * Streaming valuation, the basket is priced while reading its file
+	 * and reported without being held in memory, see {@link StreamingValuation}.
+	 * Pricing and rendering are interleaved and recorded as pricing.
+	 * 
+	 * @param basketDef		path to file containing basket definition
+	 * @param md	market data
+	 * @param measure	measure to calculate
+	 * @param out	output stream
+	 * @return	valuation totals
+	 */
+	double valuateStreaming(Path basketDef, MarketData md, Measure measure, PrintStream out) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		metrics.incrementValuations();
+		long start = metrics.start();
+		StreamingValuation valuation = new StreamingValuation(measure, sorted);
+		ReportRenderer renderer = new ReportRenderer(out, REPORT_NUMBERS_FORMAT);
+		DoubleSummaryStatistics stats;
+		try {
+			stats = valuation.valuate(basketDef, md, (name, value) -> renderLine(renderer, name, value).newLine());
+		} catch (Exception e) {
+			System.err.println(e);
+			stats = new DoubleSummaryStatistics();
+		}
+		renderer.flush();
+		pricingNanos = metrics.record(Stage.PRICING, start);
+		
+		start = metrics.start();
 		out.println("----");
 		out.println(renderTotals(stats));
 		out.println();
+		renderingNanos = metrics.record(Stage.RENDERING, start);
+		metrics.addNanPricedAssets(valuation.nanCount);
 		
 		return stats.getSum();
 	}
 
 	/**
-	 * Valuation logic, parallelization of computations done via parallel stream.
+	 * Incremental revaluation, reprices the whole basket only 
+	 * when the basket definition changed, otherwise only the assets
+	 * referencing changed quotes. Only repriced assets are reported.
+	 * 
+	 * @param state		valuation state from previous run
+	 * @param basketDef		path to file containing basket definition
+	 * @param marketData	path to file containing market data (quotes)
+	 * @param basketChanged	true when basket definition has to be reloaded
+	 * @param out	output stream
+	 * @return	valuation totals
+	 */
+	public double revaluate(IncrementalValuation state, Path basketDef, Path marketData, boolean basketChanged, PrintStream out) {
+		MarketData md = loadMarketData(marketData);
+		PipelineMetrics metrics = PipelineMetrics.get();
+		metrics.incrementRevaluations();
+		long start = metrics.start();
+		Collection<Asset> changed = basketChanged
+			? state.reset(getBasket(basketDef), md)
+			: state.update(md);
+		pricingNanos = metrics.record(Stage.PRICING, start);
+		
+		start = metrics.start();
+		out.println("Valuation date-time:    " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+		out.println("Repriced assets:        " + changed.size());
+		out.println();
+
+		Map<Asset, Double> results = state.getResults();
+		ReportRenderer renderer = new ReportRenderer(out, REPORT_NUMBERS_FORMAT);
+		changed.stream()
+			.sorted((a, b) -> a.getName().compareTo(b.getName()))
+			.map(a -> new AbstractMap.SimpleImmutableEntry<>(a, results.get(a)))
+			.forEachOrdered(e -> renderLine(renderer, e).newLine());
+		renderer.flush();
+		
+		double total = state.getTotal();
+		out.println("----");
+		out.println(renderTotals(total));
+		out.println();
+		renderingNanos = metrics.record(Stage.RENDERING, start);
+		metrics.addNanPricedAssets(changed.stream().map(results::get).filter(v -> Double.isNaN(v)).count());
+		
+		return total;
+	}
+
+	/**
+	 * Valuation logic, small baskets are priced sequentially, large ones
+	 * in parallel chunks, as planned by {@link ExecutionPlanner}.
 	 * 
 	 * @param basket	assets basket
 	 * @param md		market data
@@ -157,18 +608,182 @@ public class BasketPricer {
 	 * @return	valuation results
 	 */
 	public Map<Asset, Double> valuate(Set<Asset> basket, MarketData md, Measure measure) {
-		Map<Asset, Double> map = basket
-			.parallelStream()
-			.collect(toConcurrentMap(
-				Function.identity(),
-				c -> measure.calculate(c, md)));
+		Asset[] assets = basket.toArray(new Asset[basket.size()]);
+		double[] values = planner.valuate(assets, md, measure);
+		Map<Asset, Double> map = new HashMap<>(assets.length * 4 / 3 + 1);
+		for (int i = 0; i < assets.length; i++) {
+			map.put(assets[i], values[i]);
+		}
 		return map;
 	}
 	
+	/**
+	 * Valuation of a compiled basket, no quote name lookups are 
+	 * needed as long as the market data layout does not change.
+	 * 
+	 * @param basket	compiled basket
+	 * @param md		market data
+	 * @param measure	measure to calculate
+	 * @return	valuation results
+	 */
+	public Map<Asset, Double> valuate(CompiledBasket basket, IndexedMarketData md, Measure measure) {
+		return basket.toMap(basket.valuate(md, measure));
+	}
+	
+	/**
+	 * @param basketDef	path to file containing basket definition
+	 * @return	compiled basket, reloaded only if the file has changed
+	 */
+	CompiledBasket getCompiledBasket(Path basketDef) {
+		if (compiled == null || !compiled.isUpToDate(basketDef)) {
+			compiled = CompiledBasket.load(basketDef, this::getBasket);
+		}
+		return compiled;
+	}
+	
+	/**
+	 * Loads basket definition according to the pricer's settings
+	 * 
+	 * @param basketDef	path to file containing basket definition
+	 * @return	basket's content or empty set when error occurs
+	 */
+	Set<Asset> getBasket(Path basketDef) {
+		return parallel
+			? ParallelLoader.getBasket(basketDef)
+			: Utils.getBasket(basketDef);
+	}
+	
+	/**
+	 * Loads market data according to the pricer's settings
+	 * 
+	 * @param marketData	path to file containing market data (quotes)
+	 * @return	market data, empty when loading failed
+	 */
+	MarketData loadMarketData(Path marketData) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long start = metrics.start();
+		MarketData md = loadMarketDataOf(marketData);
+		loadNanos = metrics.record(Stage.MARKET_DATA_LOAD, start);
+		if (traceLatency) {
+			tickMicros = getTickMicros(marketData, md);
+		}
+		return md;
+	}
+	
+	/**
+	 * @param marketData	path to file containing market data (quotes)
+	 * @param md	loaded market data
+	 * @return	time of the last tick in microseconds since epoch or -1 when unknown
+	 */
+	long getTickMicros(Path marketData, MarketData md) {
+		if (md instanceof ByteBufferMarketData) {
+			return ((ByteBufferMarketData) md).getTimestamp() * 1_000;
+		}
+		if (format == MarketDataFormat.SHARED) {
+			SharedMarketData shared = this.shared;
+			return shared != null ? shared.getTimestamp() * 1_000 : -1;
+		}
+		if (journaled) {
+			// ticks are appended to the journal
+			try {
+				return Files.getLastModifiedTime(TickJournal.journalOf(marketData)).to(TimeUnit.MICROSECONDS);
+			} catch (Exception e) {
+				return -1;
+			}
+		}
+		return Utils.getTimestampMicros(marketData);
+	}
+	
+	/**
+	 * Records tick latencies of the last valuation, 
+	 * unless its market data tick has been recorded already
+	 * 
+	 * @param startMicros	start time of the valuation (microseconds since epoch)
+	 */
+	void recordLatency(long startMicros) {
+		if (tickMicros < 0 || tickMicros == recordedTickMicros) {
+			return;
+		}
+		recordedTickMicros = tickMicros;
+		
+		PipelineMetrics metrics = PipelineMetrics.get();
+		metrics.record(Latency.TICK_TO_REPORT, Utils.nowMicros() - tickMicros);
+		metrics.record(Latency.DETECTION, startMicros - tickMicros);
+		metrics.record(Latency.PARSE, loadNanos / 1_000);
+		metrics.record(Latency.PRICE, pricingNanos / 1_000);
+		metrics.record(Latency.RENDER, renderingNanos / 1_000);
+	}
+	
+	MarketData loadMarketDataOf(Path marketData) {
+		if (format == MarketDataFormat.BINARY) {
+			return Utils.getMarketDataSnapshot(marketData);
+		}
+		if (format == MarketDataFormat.SHARED) {
+			return getSharedMarketData(marketData);
+		}
+		if (journaled) {
+			return Utils.getMarketDataJournaled(marketData);
+		}
+		if (mapped) {
+			ArrayMarketData md = atomic
+				? Utils.getMarketDataMapped(marketData, layout)
+				: Utils.getMarketDataMappedWithLock(marketData, layout);
+			layout = md.getSymbolIndex();
+			return md;
+		}
+		if (parallel) {
+			ArrayMarketData md = ParallelLoader.getMarketData(marketData, layout, !atomic);
+			layout = md.getSymbolIndex();
+			return md;
+		}
+		return atomic
+			? Utils.getMarketData(marketData)
+			: Utils.getMarketDataWithLock(marketData);
+	}
+	
+	/**
+	 * Copies current prices of the shared memory segment, 
+	 * the segment is (re)opened when it has been replaced by the feed or another path is given
+	 * 
+	 * @param marketData	path to the shared segment
+	 * @return	market data, empty when the segment cannot be opened
+	 */
+	MarketData getSharedMarketData(Path marketData) {
+		// in batch mode items may use different segments
+		Path path = marketData.toAbsolutePath().normalize();
+		if (shared == null || shared.isStale() || !path.equals(sharedPath)) {
+			try {
+				shared = new SharedMarketData(SharedSegment.open(marketData));
+				sharedPath = path;
+			} catch (Exception e) {
+				System.err.println(e);
+				shared = null;
+				sharedPath = null;
+				sharedUpdates = -1;
+				return new ArrayMarketData.Builder().build();
+			}
+		}
+		// read before copying, an update during the copy will be picked up by the next poll
+		sharedUpdates = shared.getUpdates();
+		return shared.snapshot();
+	}
+	
+	/**
+	 * @return	true when the shared segment has been updated since the last load
+	 */
+	boolean isSharedUpdated() {
+		return shared != null 
+			&& (shared.isStale() || shared.getUpdates() != sharedUpdates);
+	}
+	
 	/**
 	 * Logic for continuous mode. It uses java watch service to trace changes
 	 * in basket and feed files and - if change occurs - it triggers
-	 * revaluation of the basket.
+	 * revaluation of the basket. The watcher thread only marks basket or market data
+	 * as dirty, valuations are run by a {@link ValuationScheduler}, which coalesces 
+	 * bursts of changes within the debounce window. Latencies from market data ticks
+	 * to printed reports are recorded and printed at shutdown. In shared format the market data segment 
+	 * is updated in place, hence it is polled for updates instead. 
 	 * 
 	 * @param basketDef
 	 * @param marketData
@@ -176,7 +791,10 @@ public class BasketPricer {
 	 */
 	@SuppressWarnings("unchecked")
 	public void startService(Path basketDef, Path marketData, PrintStream out) {		
-		try (WatchService service = FileSystems.getDefault().newWatchService()) {
+		try (
+			WatchService service = FileSystems.getDefault().newWatchService();
+			ValuationScheduler scheduler = newScheduler(basketDef, marketData, out);
+		) {
 			Path btDir = basketDef.toAbsolutePath().getParent();
 			btDir.register(service, ENTRY_CREATE, ENTRY_MODIFY);
 			out.println("Watcher service set on directory: " + btDir);
@@ -187,40 +805,37 @@ public class BasketPricer {
 				out.println("Watcher service set on directory: " + mdDir);
 			}
 
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> PipelineMetrics.get().dumpLatencies(out)));
 			out.println("Service started ... ");
 
-			Predicate<Path> isWatchedFile = p -> {
-				try {
-					// check basket file
-					Path ap = btDir.resolve(p);
-					if (Files.isSameFile(basketDef, ap))
-						return true;
-
-					// check market data file
-					ap = mdDir.resolve(p);
-					return Files.isSameFile(marketData, ap);
-				} catch (Exception e) {
-					return false;
-				}
-			};
+			Predicate<Path> isBasketFile = p -> isSameFile(basketDef, btDir.resolve(p));
+			Path journal = TickJournal.journalOf(marketData);
+			Predicate<Path> isMarketDataFile = p -> isSameFile(marketData, mdDir.resolve(p))
+				|| (journaled && isSameFile(journal, mdDir.resolve(p)));
 
 			/* *************************
 			 * Service's main loop
 			 */
+			long pollMillis = SHARED_POLL_MIN_MILLIS;
 			while (true) {
-				WatchKey key = service.take();
-				boolean b = key.pollEvents()
-					.stream()
-					.filter(e -> e.kind() != OVERFLOW)
-					.map(e -> ((WatchEvent<Path>) e).context())
-					.filter(isWatchedFile)
-					.findAny().isPresent();
-
-				if (b) {
-					valuate(basketDef, marketData, out);
-				}
+				WatchKey key = format == MarketDataFormat.SHARED
+					? service.poll(pollMillis, TimeUnit.MILLISECONDS)
+					: service.take();
+				List<Path> paths = key == null 
+					? Collections.emptyList()
+					: key.pollEvents()
+						.stream()
+						.filter(e -> e.kind() != OVERFLOW)
+						.map(e -> ((WatchEvent<Path>) e).context())
+						.collect(toList());
+				boolean bt = paths.stream().anyMatch(isBasketFile);
+				boolean md = paths.stream().anyMatch(isMarketDataFile) || isSharedUpdated();
+				// back off while the shared segment is idle
+				pollMillis = md ? SHARED_POLL_MIN_MILLIS : Math.min(2 * pollMillis, SHARED_POLL_MAX_MILLIS);
+
+				scheduler.request(bt, md);
 				
-				if (!key.reset()) {
+				if (key != null && !key.reset()) {
 					break;
 				}
 			}
@@ -232,13 +847,107 @@ public class BasketPricer {
 		}
 	}
 	
+	/**
+	 * @param basketDef
+	 * @param marketData
+	 * @param out
+	 * @return	scheduler running full or incremental valuations
+	 */
+	ValuationScheduler newScheduler(Path basketDef, Path marketData, PrintStream out) {
+		traceLatency = true;
+		// files as of the initial valuation
+		changes.isChanged(basketDef);
+		isMarketDataChanged(marketData);
+		if (incremental) {
+			IncrementalValuation state = new IncrementalValuation(new PriceMeasure());
+			Set<Asset> basket = seedBasket != null ? seedBasket : getBasket(basketDef);
+			// market data is not loaded when the initial valuation was cached
+			MarketData md = seedMarketData != null ? seedMarketData : loadMarketData(marketData);
+			seedBasket = null;
+			seedMarketData = null;
+			state.reset(basket, md);
+			tickMicros = getTickMicros(marketData, md);
+			recordedTickMicros = tickMicros;
+			return new ValuationScheduler(bt -> {
+				boolean btChanged = bt && changes.isChanged(basketDef);
+				if (!isMarketDataChanged(marketData) && !btChanged) {
+					PipelineMetrics.get().incrementSkippedReloads();
+					return;
+				}
+				long start = Utils.nowMicros();
+				revaluate(state, basketDef, marketData, btChanged, out);
+				recordLatency(start);
+			}, debounce);
+		}
+		return new ValuationScheduler(bt -> {
+			boolean btChanged = bt && changes.isChanged(basketDef);
+			if (!isMarketDataChanged(marketData) && !btChanged) {
+				PipelineMetrics.get().incrementSkippedReloads();
+				return;
+			}
+			long start = Utils.nowMicros();
+			valuate(basketDef, marketData, out);
+			recordLatency(start);
+		}, debounce);
+	}
+	
+	/**
+	 * @param marketData	path to file containing market data (quotes)
+	 * @return	true when content of the market data (and its journal) changed since the previous call,
+	 * 			always true in shared format, the segment is polled for updates
+	 */
+	boolean isMarketDataChanged(Path marketData) {
+		if (format == MarketDataFormat.SHARED) {
+			return true;
+		}
+		boolean changed = changes.isChanged(marketData);
+		if (journaled) {
+			changed |= changes.isChanged(TickJournal.journalOf(marketData));
+		}
+		return changed;
+	}
+	
+	static long countNaN(Collection<Double> values) {
+		return values.stream().filter(v -> Double.isNaN(v)).count();
+	}
+	
+	static boolean isSameFile(Path a, Path b) {
+		try {
+			return Files.isSameFile(a, b);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+	
 	String renderLine(Map.Entry<Asset, Double> e) {
 		String str = String.format("%-9s %15s", e.getKey().getName(), REPORT_NUMBERS_FORMAT.format(e.getValue()));		
 		return str;
 	}
 	
+	/**
+	 * Renders the same line as {@link #renderLine(Map.Entry)} 
+	 * 
+	 * @param renderer	report renderer
+	 * @param e	asset - value pair
+	 * @return	renderer
+	 */
+	ReportRenderer renderLine(ReportRenderer renderer, Map.Entry<Asset, Double> e) {
+		return renderLine(renderer, e.getKey().getName(), e.getValue());
+	}
+	
+	ReportRenderer renderLine(ReportRenderer renderer, String name, double value) {
+		return renderer
+			.left(name, 9)
+			.append(' ')
+			.right(value, 15);
+	}
+	
 	String renderTotals(DoubleSummaryStatistics stats) {
-		String str = String.format("TOTALS    %15s", REPORT_NUMBERS_FORMAT.format(stats.getSum()));
+		return renderTotals(stats.getSum());
+	}
+	
+	String renderTotals(double sum) {
+		String str = String.format("TOTALS    %15s", REPORT_NUMBERS_FORMAT.format(sum));
 		return str;
 	}	
 }
@@ -0,0 +1,225 @@
+package mp.app;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import mp.app.marketdata.MarketData;
+
+/**
+ * Valuation of many basket / market data pairs in a single run,
+ * so that JVM startup, class loading and JIT warm-up are paid once.
+ *
+ * Items are given by a manifest file, one item per line:
+ * <pre>
+ * basket_name
+ * basket_file marketdata_file [report_file]
+ * </pre>
+ * with paths relative to the manifest's directory, or by a glob of basket files
+ * (e.g. <code>examples/*.basket</code>), each paired with the market data file of the same name.
+ *
+ * Items are valuated grouped by market data file, each report is written to its report file
+ * (by default the basket file with suffix {@value #FILE_SUFFIX_REPORT}), market data files
+ * shared by several baskets are loaded once and released after their last item.
+ * A summary with totals and wall times of the items in batch order is printed at the end.
+ */
+public class BatchValuation {
+
+	static final String FILE_SUFFIX_REPORT = "report";
+
+	/**
+	 * Basket / market data pair of the batch
+	 */
+	public static class Item {
+
+		final Path basket;
+
+		final Path marketData;
+
+		final Path report;
+
+		/**
+		 * Constructor
+		 *
+		 * @param basket	basket definition file
+		 * @param marketData	market data file
+		 * @param report	report file
+		 */
+		public Item(Path basket, Path marketData, Path report) {
+			this.basket = basket;
+			this.marketData = marketData;
+			this.report = report;
+		}
+
+		@Override
+		public String toString() {
+			return this.getClass().getSimpleName()
+				+ "[" + "basket=" + basket + ",marketData=" + marketData + ",report=" + report + "]";
+		}
+	}
+
+	final BasketPricer pricer;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pricer	pricer of the items
+	 */
+	public BatchValuation(BasketPricer pricer) {
+		this.pricer = pricer;
+	}
+
+	/**
+	 * Resolves items of a batch
+	 *
+	 * @param batch	manifest file or glob of basket files
+	 * @param format	format of market data files
+	 * @return	items in manifest or file name order
+	 * @throws IOException	when the manifest or the directory cannot be read
+	 * @throws IllegalArgumentException	when a manifest line is malformed
+	 */
+	public static List<Item> getItems(String batch, MarketDataFormat format) throws IOException {
+		Path path = Paths.get(batch);
+		return Files.isRegularFile(path)
+			? getManifestItems(path, format)
+			: getGlobItems(path, format);
+	}
+
+	static List<Item> getManifestItems(Path manifest, MarketDataFormat format) throws IOException {
+		Path dir = manifest.toAbsolutePath().getParent();
+		List<Item> items = new ArrayList<>();
+		for (String line : Files.readAllLines(manifest)) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] ts = line.split("\\s+");
+			switch (ts.length) {
+				case 1:
+					Path basket = dir.resolve(ts[0] + "." + BasketPricer.FILE_SUFFIX_BASKET);
+					items.add(new Item(basket, dir.resolve(ts[0] + "." + format.getSuffix()), reportOf(basket)));
+					break;
+
+				case 2:
+				case 3:
+					basket = dir.resolve(ts[0]);
+					items.add(new Item(basket, dir.resolve(ts[1]), ts.length == 3 ? dir.resolve(ts[2]) : reportOf(basket)));
+					break;
+
+				default:
+					throw new IllegalArgumentException("Malformed manifest line: " + line);
+			}
+		}
+		return items;
+	}
+
+	static List<Item> getGlobItems(Path glob, MarketDataFormat format) throws IOException {
+		Path dir = glob.toAbsolutePath().getParent();
+		List<Path> baskets = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob.getFileName().toString())) {
+			for (Path p : stream) {
+				if (Files.isRegularFile(p)) {
+					baskets.add(p);
+				}
+			}
+		}
+		baskets.sort(null);
+
+		List<Item> items = new ArrayList<>();
+		for (Path basket : baskets) {
+			items.add(new Item(basket, basket.resolveSibling(baseName(basket) + "." + format.getSuffix()), reportOf(basket)));
+		}
+		return items;
+	}
+
+	static Path reportOf(Path basket) {
+		return basket.resolveSibling(baseName(basket) + "." + FILE_SUFFIX_REPORT);
+	}
+
+	static String baseName(Path file) {
+		String name = file.getFileName().toString();
+		int i = name.lastIndexOf('.');
+		return i > 0 ? name.substring(0, i) : name;
+	}
+
+	/**
+	 * Valuates all items and prints the summary
+	 *
+	 * @param items	items of the batch
+	 * @param out	output stream of the summary
+	 * @return	valuation totals by item, NaN for items whose report could not be written
+	 */
+	public double[] valuate(List<Item> items, PrintStream out) {
+		double[] totals = new double[items.size()];
+		long[] nanos = new long[items.size()];
+		long start = System.nanoTime();
+
+		// items sharing a feed are valuated one after another, the feed is kept until its last use
+		List<Integer> order = new ArrayList<>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			order.add(i);
+		}
+		order.sort(Comparator.comparing(i -> keyOf(items.get(i).marketData)));
+
+		Map<Path, MarketData> loaded = new HashMap<>();
+		Function<Path, MarketData> loader = path -> loaded.computeIfAbsent(keyOf(path), k -> pricer.loadMarketData(path));
+		int loads = 0;
+		for (int n = 0; n < order.size(); n++) {
+			int i = order.get(n);
+			Item item = items.get(i);
+			long itemStart = System.nanoTime();
+			int size = loaded.size();
+			try (PrintStream report = new PrintStream(Files.newOutputStream(item.report))) {
+				totals[i] = pricer.valuate(item.basket, item.marketData, loader, report);
+			} catch (IOException e) {
+				System.err.println(e);
+				totals[i] = Double.NaN;
+			}
+			loads += loaded.size() - size;
+			Path key = keyOf(item.marketData);
+			if (n + 1 == order.size() || !key.equals(keyOf(items.get(order.get(n + 1)).marketData))) {
+				loaded.remove(key);
+			}
+			nanos[i] = System.nanoTime() - itemStart;
+		}
+
+		/*
+		 * Summary
+		 */
+		ReportRenderer renderer = new ReportRenderer(out, BasketPricer.REPORT_NUMBERS_FORMAT);
+		out.println("Batch summary:");
+		for (int i = 0; i < items.size(); i++) {
+			renderer
+				.left(items.get(i).basket.getFileName().toString(), 20)
+				.append(' ')
+				.right(totals[i], 15)
+				.append(' ')
+				.right(nanos[i] / 1e6, 12)
+				.append(" ms  ")
+				.append(items.get(i).report.toString())
+				.newLine();
+		}
+		renderer.flush();
+		out.println("----");
+		out.println(String.format("TOTAL TIME %27s ms", BasketPricer.REPORT_NUMBERS_FORMAT.format((System.nanoTime() - start) / 1e6))
+			+ "  " + items.size() + " items, " + loads + " market data files loaded");
+		out.println();
+		return totals;
+	}
+
+	/**
+	 * @return	key of a market data file, equal for all paths of the file
+	 */
+	static Path keyOf(Path marketData) {
+		return marketData.toAbsolutePath().normalize();
+	}
+}
@@ -0,0 +1,149 @@
+package mp.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Detection of content changes of watched files in continuous mode.
+ *
+ * Files are compared by size and modification time first, a file whose
+ * size or modification time differs is hashed (streaming CRC32) ignoring
+ * the <code># Timestamp:</code> header line, so that files rewritten with identical
+ * content, e.g. feeds of unchanged prices, are not reloaded.
+ *
+ * Modification times have limited granularity, hence a file modified shortly
+ * before it was stamped may change again without a visible difference
+ * of size and time; such stamps are not trusted and the file is hashed again.
+ */
+public class ChangeDetector {
+
+	/**
+	 * Modification times closer than this to the stamping time are not trusted
+	 */
+	static final long RACY_MILLIS = 2_000;
+
+	static final byte[] TIMESTAMP_PREFIX = Utils.TIMESTAMP_HEADER.trim().getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Size, modification time and content hash of a file
+	 */
+	static class Stamp {
+
+		final long size;
+
+		final long modified;
+
+		final long stamped;
+
+		final long hash;
+
+		Stamp(long size, long modified, long stamped, long hash) {
+			this.size = size;
+			this.modified = modified;
+			this.stamped = stamped;
+			this.hash = hash;
+		}
+
+		boolean isSameVersion(long size, long modified) {
+			return this.size == size
+				&& this.modified == modified
+				&& modified < stamped - RACY_MILLIS;
+		}
+	}
+
+	final Map<Path, Stamp> stamps = new HashMap<>();
+
+	/**
+	 * Compares the file with its state at the previous call and records the current one
+	 *
+	 * @param path	watched file
+	 * @return	true when the file's content changed, on the first call for the file
+	 * 			or when the file cannot be read
+	 */
+	public synchronized boolean isChanged(Path path) {
+		Path key = path.toAbsolutePath().normalize();
+		Stamp prev = stamps.get(key);
+		try {
+			long stamped = System.currentTimeMillis();
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			long size = attrs.size();
+			long modified = attrs.lastModifiedTime().toMillis();
+			if (prev != null && prev.isSameVersion(size, modified)) {
+				return false;
+			}
+			long hash = hash(path);
+			stamps.put(key, new Stamp(size, modified, stamped, hash));
+			return prev == null || prev.hash != hash;
+		} catch (IOException e) {
+			stamps.remove(key);
+			return true;
+		}
+	}
+
+	/**
+	 * Forgets recorded states
+	 */
+	public synchronized void clear() {
+		stamps.clear();
+	}
+
+	/**
+	 * CRC32 of the file's content without lines starting with <code># Timestamp:</code>
+	 *
+	 * @param path	file
+	 * @return	content hash
+	 * @throws IOException
+	 */
+	static long hash(Path path) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[1 << 16];
+		// number of header prefix bytes matched at a line start (held back), -1 within a line
+		int matched = 0;
+		boolean skipping = false;
+		try (InputStream in = Files.newInputStream(path)) {
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				// start of bytes to be hashed
+				int from = 0;
+				for (int i = 0; i < n; i++) {
+					byte b = buf[i];
+					if (skipping) {
+						if (b == '\n') {
+							skipping = false;
+							matched = 0;
+						}
+						from = i + 1;
+					} else if (matched >= 0 && b == TIMESTAMP_PREFIX[matched]) {
+						if (matched == 0) {
+							crc.update(buf, from, i - from);
+						}
+						from = i + 1;
+						if (++matched == TIMESTAMP_PREFIX.length) {
+							skipping = true;
+							matched = -1;
+						}
+					} else {
+						if (matched > 0) {
+							// not a header, held back bytes equal the prefix
+							crc.update(TIMESTAMP_PREFIX, 0, matched);
+							from = i;
+						}
+						matched = b == '\n' ? 0 : -1;
+					}
+				}
+				crc.update(buf, from, n - from);
+			}
+		}
+		if (matched > 0) {
+			crc.update(TIMESTAMP_PREFIX, 0, matched);
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,221 @@
+package mp.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import mp.app.marketdata.IndexedMarketData;
+import mp.app.measure.Measure;
+
+/**
+ * Basket prepared for repeated pricing against market data snapshots
+ * sharing the same symbol layout.
+ *
+ * Assets are kept in columns (sorted by name, i.e. in report order),
+ * quote names are resolved to slots of an {@link IndexedMarketData} once,
+ * so that repricing is an index based loop without any hash lookups
+ * followed by a single batch call of the measure.
+ * The binding is renewed only when the symbol layout changes.
+ */
+public class CompiledBasket {
+
+	final Asset[] assets;
+
+	final double[] quantities;
+
+	final String[] quoteNames;
+
+	Object layout;
+
+	int[] slots;
+
+	/**
+	 * Buffer of resolved prices, reused between valuations
+	 */
+	double[] prices;
+
+	/*
+	 * Source file stamp, used to detect basket file modifications
+	 */
+	Path path;
+
+	FileTime modified;
+
+	long size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param basket	assets basket
+	 */
+	public CompiledBasket(Collection<Asset> basket) {
+		assets = basket.stream()
+			.sorted(Comparator.comparing(Asset::getName))
+			.toArray(Asset[]::new);
+		quantities = new double[assets.length];
+		quoteNames = new String[assets.length];
+		for (int i = 0; i < assets.length; i++) {
+			quantities[i] = assets[i].getQuantity();
+			quoteNames[i] = assets[i].getQuoteName();
+		}
+	}
+
+	/**
+	 * Loads and compiles basket definition from a file
+	 *
+	 * @param path	path to basket file
+	 * @return	compiled basket, empty when error occurs
+	 */
+	public static CompiledBasket load(Path path) {
+		return load(path, Utils::getBasket);
+	}
+
+	/**
+	 * Loads and compiles basket definition from a file
+	 *
+	 * @param path	path to basket file
+	 * @param loader	basket file loader, e.g. {@link ParallelLoader#getBasket(Path)}
+	 * @return	compiled basket, empty when error occurs
+	 */
+	public static CompiledBasket load(Path path, Function<Path, Set<Asset>> loader) {
+		FileTime modified = null;
+		long size = -1;
+		try {
+			modified = Files.getLastModifiedTime(path);
+			size = Files.size(path);
+		} catch (IOException e) {
+			// stamp stays unknown, the basket will be considered stale
+		}
+
+		CompiledBasket cb = new CompiledBasket(loader.apply(path));
+		cb.path = path;
+		cb.modified = modified;
+		cb.size = size;
+		return cb;
+	}
+
+	/**
+	 * @param path	path to basket file
+	 * @return	true if the basket has been loaded from the file
+	 * 			and the file has not been modified since
+	 */
+	public boolean isUpToDate(Path path) {
+		try {
+			return path.equals(this.path)
+				&& modified != null
+				&& modified.equals(Files.getLastModifiedTime(path))
+				&& size == Files.size(path);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Resolves quote names to slots of the market data,
+	 * skipped when the basket is already bound to an equal layout.
+	 *
+	 * @param md	market data
+	 */
+	public void bind(IndexedMarketData md) {
+		Object layout = md.getLayout();
+		if (isBoundTo(layout)) {
+			this.layout = layout;
+			return;
+		}
+
+		int[] slots = new int[quoteNames.length];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = md.slotOf(quoteNames[i]);
+		}
+		this.slots = slots;
+		this.layout = layout;
+	}
+
+	/**
+	 * @param layout	layout of market data
+	 * @return	true when slots are valid for the layout
+	 */
+	public boolean isBoundTo(Object layout) {
+		return this.layout == layout
+			|| (this.layout != null && this.layout.equals(layout));
+	}
+
+	/**
+	 * Resolves quote prices by asset index, Double.NaN for missing quotes
+	 *
+	 * @param md	market data
+	 * @param out	prices by asset index
+	 * @return	out array
+	 */
+	public double[] resolvePrices(IndexedMarketData md, double[] out) {
+		bind(md);
+
+		int[] slots = this.slots;
+		for (int i = 0; i < slots.length; i++) {
+			int s = slots[i];
+			out[i] = s >= 0 ? md.getPrice(s) : Double.NaN;
+		}
+		return out;
+	}
+
+	/**
+	 * Prices the basket by a single call of the measure's batch calculation
+	 *
+	 * @param md	market data
+	 * @param measure	measure to calculate
+	 * @return	values by asset index
+	 */
+	public double[] valuate(IndexedMarketData md, Measure measure) {
+		return valuate(md, measure, new double[assets.length]);
+	}
+
+	/**
+	 * Prices the basket by a single call of the measure's batch calculation
+	 *
+	 * @param md	market data
+	 * @param measure	measure to calculate
+	 * @param out	values by asset index
+	 * @return	out array
+	 */
+	public double[] valuate(IndexedMarketData md, Measure measure, double[] out) {
+		if (prices == null) {
+			prices = new double[assets.length];
+		}
+		measure.calculate(assets, quantities, resolvePrices(md, prices), md, out);
+		return out;
+	}
+
+	/**
+	 * @param values	values by asset index
+	 * @return	map of asset - value pairs
+	 */
+	public Map<Asset, Double> toMap(double[] values) {
+		Map<Asset, Double> map = new HashMap<>(assets.length * 2);
+		for (int i = 0; i < assets.length; i++) {
+			map.put(assets[i], values[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * @return	number of assets
+	 */
+	public int size() {
+		return assets.length;
+	}
+
+	/**
+	 * @param i	asset index
+	 * @return	asset
+	 */
+	public Asset getAsset(int i) {
+		return assets[i];
+	}
+}
@@ -0,0 +1,251 @@
+package mp.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+
+/**
+ * Valuation state of many baskets hosted in one process, indexed by quote names.
+ *
+ * Each asset of a basket is a {@link Position} holding its current value, the index maps
+ * quote names to positions referencing them. A tick reprices only the positions of the
+ * ticked quotes and adjusts the totals of their baskets, hence its cost is proportional
+ * to the fan-out of the quote rather than to the number of positions held.
+ * Adding, replacing or removing a basket updates the index for that basket only.
+ *
+ * The measure is expected to depend on the asset's own quote only, as in
+ * {@link IncrementalValuation}. Instances are not thread-safe.
+ *
+ * @param <K>	basket key, e.g. path of the basket file
+ */
+public class DependencyIndex<K> {
+
+	/**
+	 * Asset of a basket and its current value
+	 */
+	public static class Position<K> {
+
+		final K basket;
+
+		final Asset asset;
+
+		double value;
+
+		/**
+		 * Index of the position in the list of its quote
+		 */
+		int index;
+
+		Position(K basket, Asset asset) {
+			this.basket = basket;
+			this.asset = asset;
+		}
+
+		public K getBasket() {
+			return basket;
+		}
+
+		public Asset getAsset() {
+			return asset;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return this.getClass().getSimpleName()
+				+ "[" + "basket=" + basket + ",asset=" + asset.getName() + ",value=" + value + "]";
+		}
+	}
+
+	/**
+	 * Positions of a basket and their total
+	 */
+	static class Holding<K> {
+
+		final List<Position<K>> positions = new ArrayList<>();
+
+		final RunningTotal total = new RunningTotal();
+	}
+
+	final Measure measure;
+
+	final Map<K, Holding<K>> baskets = new HashMap<>();
+
+	final Map<String, List<Position<K>>> byQuote = new HashMap<>();
+
+	/**
+	 * Market data of the last valuation
+	 */
+	MarketData md;
+
+	/**
+	 * Constructor
+	 *
+	 * @param measure	measure to calculate
+	 */
+	public DependencyIndex(Measure measure) {
+		this.measure = measure;
+	}
+
+	/**
+	 * Adds or replaces a basket and valuates it
+	 *
+	 * @param key	basket key
+	 * @param basket	assets of the basket
+	 * @param md	current market data
+	 * @return	positions of the basket
+	 */
+	public List<Position<K>> put(K key, Set<Asset> basket, MarketData md) {
+		remove(key);
+		this.md = md;
+
+		Holding<K> holding = new Holding<>();
+		for (Asset a : basket) {
+			Position<K> p = new Position<>(key, a);
+			p.value = measure.calculate(a, md);
+			holding.positions.add(p);
+			holding.total.add(p.value);
+			List<Position<K>> list = byQuote.computeIfAbsent(a.getQuoteName(), k -> new ArrayList<>());
+			p.index = list.size();
+			list.add(p);
+		}
+		baskets.put(key, holding);
+		return Collections.unmodifiableList(holding.positions);
+	}
+
+	/**
+	 * Removes a basket
+	 *
+	 * @param key	basket key
+	 * @return	true when the basket was present
+	 */
+	public boolean remove(K key) {
+		Holding<K> holding = baskets.remove(key);
+		if (holding == null) {
+			return false;
+		}
+		for (Position<K> p : holding.positions) {
+			String quote = p.asset.getQuoteName();
+			List<Position<K>> list = byQuote.get(quote);
+			// the last position takes the place of the removed one
+			Position<K> last = list.remove(list.size() - 1);
+			if (last != p) {
+				list.set(p.index, last);
+				last.index = p.index;
+			}
+			if (list.isEmpty()) {
+				byQuote.remove(quote);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reprices the positions of ticked quotes
+	 *
+	 * @param quotes	names of changed quotes
+	 * @param md	market data containing the changes
+	 * @return	repriced positions
+	 */
+	public List<Position<K>> tick(Collection<String> quotes, MarketData md) {
+		this.md = md;
+		List<Position<K>> changed = new ArrayList<>();
+		for (String quote : quotes) {
+			List<Position<K>> list = byQuote.get(quote);
+			if (list == null) {
+				continue;
+			}
+			for (Position<K> p : list) {
+				double v = measure.calculate(p.asset, md);
+				baskets.get(p.basket).total.replace(p.value, v);
+				p.value = v;
+				changed.add(p);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Reprices positions of quotes changed against the market data of the last valuation,
+	 * the cost of the comparison is proportional to the number of indexed quotes
+	 *
+	 * @param md	new market data
+	 * @return	repriced positions
+	 */
+	public List<Position<K>> update(MarketData md) {
+		MarketData prev = this.md;
+		List<String> quotes = new ArrayList<>();
+		for (String quote : byQuote.keySet()) {
+			if (prev == null || IncrementalValuation.isChanged(prev.getQuote(quote), md.getQuote(quote))) {
+				quotes.add(quote);
+			}
+		}
+		return tick(quotes, md);
+	}
+
+	/**
+	 * @param quote	quote name
+	 * @return	positions referencing the quote
+	 */
+	public List<Position<K>> getPositions(String quote) {
+		List<Position<K>> list = byQuote.get(quote);
+		return list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+	}
+
+	/**
+	 * @param key	basket key
+	 * @return	positions of the basket, empty when not present
+	 */
+	public List<Position<K>> getBasket(K key) {
+		Holding<K> holding = baskets.get(key);
+		return holding != null ? Collections.unmodifiableList(holding.positions) : Collections.emptyList();
+	}
+
+	/**
+	 * @param key	basket key
+	 * @return	sum of the basket's values, NaN when not present
+	 */
+	public double getTotal(K key) {
+		Holding<K> holding = baskets.get(key);
+		return holding != null ? holding.total.get() : Double.NaN;
+	}
+
+	/**
+	 * @return	keys of hosted baskets
+	 */
+	public Set<K> getBaskets() {
+		return Collections.unmodifiableSet(baskets.keySet());
+	}
+
+	/**
+	 * @return	number of indexed quotes
+	 */
+	public int size() {
+		return byQuote.size();
+	}
+
+	/**
+	 * Totals of baskets affected by repriced positions
+	 *
+	 * @param changed	repriced positions
+	 * @return	basket key - total pairs, in order of first appearance
+	 */
+	public Map<K, Double> getTotals(List<Position<K>> changed) {
+		Map<K, Double> totals = new LinkedHashMap<>();
+		for (Position<K> p : changed) {
+			totals.computeIfAbsent(p.basket, this::getTotal);
+		}
+		return totals;
+	}
+}
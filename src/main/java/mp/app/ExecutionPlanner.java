@@ -0,0 +1,309 @@
+package mp.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+
+/**
+ * Chooses how to execute the pricing stage.
+ *
+ * The cost of an asset is sampled by pricing the first assets sequentially,
+ * the remaining work is then estimated by the sampled cost. Work below the
+ * calibrated threshold - a multiple of the time needed to dispatch tasks to
+ * all threads of the pool - is done by a plain loop, otherwise the assets are
+ * split into chunks priced by the fork-join pool or by the executor service.
+ * Each chunk writes to its own range of the results array, no shared map is used.
+ *
+ * By default the common pool is used, a dedicated pool or executor
+ * keeps pricing from competing with other users of the common pool.
+ */
+public class ExecutionPlanner {
+
+	/**
+	 * Execution strategies
+	 */
+	public enum Plan {
+
+		/**
+		 * Plain loop in the calling thread
+		 */
+		SEQUENTIAL,
+
+		/**
+		 * Chunks forked on the fork-join pool
+		 */
+		FORK_JOIN,
+
+		/**
+		 * Chunks submitted to the executor service
+		 */
+		EXECUTOR
+	}
+
+	/**
+	 * Maximal number of sampled assets
+	 */
+	static final int SAMPLE_SIZE = 4;
+
+	/**
+	 * Number of chunks per thread, evens out uneven pricing costs
+	 */
+	static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * Parallel execution pays off for work of at least this multiple of the dispatch overhead
+	 */
+	static final int OVERHEAD_FACTOR = 10;
+
+	/**
+	 * Lower bound of the threshold, guards against too optimistic calibration
+	 */
+	static final long MIN_THRESHOLD_NANOS = 20_000;
+
+	static final int CALIBRATION_ROUNDS = 8;
+
+	final ForkJoinPool pool;
+
+	final ExecutorService executor;
+
+	final int parallelism;
+
+	/**
+	 * Estimated work in nanoseconds above which the assets are priced in parallel,
+	 * calibrated on first use
+	 */
+	volatile long thresholdNanos = -1;
+
+	/**
+	 * Plan of the last valuation
+	 */
+	volatile Plan lastPlan;
+
+	/**
+	 * Constructor, chunks are priced by the common pool
+	 */
+	public ExecutionPlanner() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool	fork-join pool pricing the chunks
+	 */
+	public ExecutionPlanner(ForkJoinPool pool) {
+		this.pool = pool;
+		this.executor = null;
+		this.parallelism = pool.getParallelism();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param executor	executor service pricing the chunks
+	 * @param parallelism	number of threads of the executor
+	 */
+	public ExecutionPlanner(ExecutorService executor, int parallelism) {
+		this.pool = null;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Prices the assets
+	 *
+	 * @param assets	asset definitions
+	 * @param md	market data
+	 * @param measure	measure to calculate
+	 * @return	calculated values by asset index
+	 */
+	public double[] valuate(Asset[] assets, MarketData md, Measure measure) {
+		double[] values = new double[assets.length];
+
+		// sampling
+		int sampled = 0;
+		long start = System.nanoTime();
+		long elapsed = 0;
+		while (sampled < assets.length && sampled < SAMPLE_SIZE && elapsed < MIN_THRESHOLD_NANOS) {
+			values[sampled] = measure.calculate(assets[sampled], md);
+			sampled++;
+			elapsed = System.nanoTime() - start;
+		}
+
+		int remaining = assets.length - sampled;
+		Plan plan = remaining > 0
+			? plan(remaining, (double) elapsed / sampled)
+			: Plan.SEQUENTIAL;
+		lastPlan = plan;
+
+		switch (plan) {
+			case SEQUENTIAL:
+				valuate(assets, md, measure, values, sampled, assets.length);
+				break;
+
+			case FORK_JOIN:
+				pool.invoke(forkJoin(assets, md, measure, values, sampled));
+				break;
+
+			case EXECUTOR:
+				execute(assets, md, measure, values, sampled);
+				break;
+		}
+		return values;
+	}
+
+	/**
+	 * @param remaining	number of assets to price
+	 * @param nanosPerAsset	estimated cost of an asset
+	 * @return	execution strategy
+	 */
+	public Plan plan(int remaining, double nanosPerAsset) {
+		if (parallelism <= 1 || remaining < 2 || remaining * nanosPerAsset < getThresholdNanos()) {
+			return Plan.SEQUENTIAL;
+		}
+		return executor != null ? Plan.EXECUTOR : Plan.FORK_JOIN;
+	}
+
+	/**
+	 * @return	plan of the last valuation, null before the first one
+	 */
+	public Plan getLastPlan() {
+		return lastPlan;
+	}
+
+	/**
+	 * @return	estimated work in nanoseconds above which the assets are priced in parallel
+	 */
+	public long getThresholdNanos() {
+		if (thresholdNanos < 0) {
+			thresholdNanos = Math.max(MIN_THRESHOLD_NANOS, OVERHEAD_FACTOR * calibrate());
+		}
+		return thresholdNanos;
+	}
+
+	/**
+	 * Measures dispatching of an empty task per thread and waiting for their completion
+	 *
+	 * @return	the fastest of several rounds in nanoseconds
+	 */
+	long calibrate() {
+		if (parallelism <= 1) {
+			return 0;
+		}
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+			long start = System.nanoTime();
+			if (executor != null) {
+				List<Callable<Object>> tasks = new ArrayList<>();
+				for (int i = 0; i < parallelism; i++) {
+					tasks.add(() -> null);
+				}
+				try {
+					executor.invokeAll(tasks);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return 0;
+				}
+			} else {
+				pool.invoke(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						List<RecursiveAction> tasks = new ArrayList<>();
+						for (int i = 0; i < parallelism; i++) {
+							tasks.add(new RecursiveAction() {
+								private static final long serialVersionUID = 1L;
+
+								@Override
+								protected void compute() {
+								}
+							});
+						}
+						ForkJoinTask.invokeAll(tasks);
+					}
+				});
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * @return	chunk boundaries of a range, ascending
+	 */
+	int[] chunks(int from, int to) {
+		int n = Math.max(1, Math.min(to - from, parallelism * CHUNKS_PER_THREAD));
+		int[] bounds = new int[n + 1];
+		for (int i = 0; i <= n; i++) {
+			bounds[i] = from + (int) ((long) (to - from) * i / n);
+		}
+		return bounds;
+	}
+
+	RecursiveAction forkJoin(Asset[] assets, MarketData md, Measure measure, double[] values, int from) {
+		int[] bounds = chunks(from, assets.length);
+		return new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				List<RecursiveAction> tasks = new ArrayList<>();
+				for (int i = 0; i + 1 < bounds.length; i++) {
+					int lo = bounds[i];
+					int hi = bounds[i + 1];
+					tasks.add(new RecursiveAction() {
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						protected void compute() {
+							valuate(assets, md, measure, values, lo, hi);
+						}
+					});
+				}
+				ForkJoinTask.invokeAll(tasks);
+			}
+		};
+	}
+
+	void execute(Asset[] assets, MarketData md, Measure measure, double[] values, int from) {
+		int[] bounds = chunks(from, assets.length);
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (int i = 0; i + 1 < bounds.length; i++) {
+			int lo = bounds[i];
+			int hi = bounds[i + 1];
+			tasks.add(() -> {
+				valuate(assets, md, measure, values, lo, hi);
+				return null;
+			});
+		}
+		try {
+			for (Future<Object> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Valuation interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof RuntimeException
+				? (RuntimeException) cause
+				: new IllegalStateException(cause);
+		}
+	}
+
+	static void valuate(Asset[] assets, MarketData md, Measure measure, double[] values, int from, int to) {
+		for (int i = from; i < to; i++) {
+			values[i] = measure.calculate(assets[i], md);
+		}
+	}
+}
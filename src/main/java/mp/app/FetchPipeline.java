@@ -0,0 +1,206 @@
+package mp.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent fetch of market data in batches of quote names.
+ *
+ * Batches are fetched on virtual threads when the JDK provides them,
+ * otherwise on a bounded pool of daemon threads; at most <code>concurrency</code>
+ * batches are in flight. A batch which fails or does not complete within
+ * the timeout is retried, a batch failing all attempts is logged and its
+ * quotes are left out of the result, they were not fetched.
+ *
+ * Results of a batch are passed to the batch consumer as soon as the batch
+ * completes (in the calling thread), the merged result is returned after the last one.
+ */
+public class FetchPipeline implements AutoCloseable {
+
+	/**
+	 * Fetch of a single batch, e.g. {@link MarketDataFeed#fetch(Set)}
+	 */
+	@FunctionalInterface
+	public interface BatchFetcher {
+		Map<String, Double> fetch(Set<String> names) throws Exception;
+	}
+
+	/**
+	 * Single attempt to fetch a batch
+	 */
+	static class Attempt {
+
+		final Set<String> names;
+
+		final int number;
+
+		long deadline;
+
+		Attempt(Set<String> names, int number) {
+			this.names = names;
+			this.number = number;
+		}
+	}
+
+	final BatchFetcher fetcher;
+
+	final int batchSize;
+
+	final long timeoutMillis;
+
+	final int retries;
+
+	final int concurrency;
+
+	final ExecutorService executor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fetcher	fetch of a single batch
+	 * @param batchSize	maximal number of quote names in a batch
+	 * @param timeoutMillis	timeout of an attempt in milliseconds
+	 * @param retries	number of retries of a failed or timed out batch
+	 * @param concurrency	maximal number of batches in flight
+	 */
+	public FetchPipeline(BatchFetcher fetcher, int batchSize, long timeoutMillis, int retries, int concurrency) {
+		this.fetcher = fetcher;
+		this.batchSize = batchSize;
+		this.timeoutMillis = timeoutMillis;
+		this.retries = retries;
+		this.concurrency = concurrency;
+		this.executor = newExecutor(concurrency);
+	}
+
+	/**
+	 * Virtual thread per task executor (JDK 21+) or a fixed pool of daemon threads
+	 */
+	static ExecutorService newExecutor(int threads) {
+		try {
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "fetch");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	/**
+	 * Splits quote names into batches, in name order
+	 *
+	 * @param names	quote names
+	 * @return	batches of at most batch size names
+	 */
+	List<Set<String>> split(Set<String> names) {
+		List<Set<String>> batches = new ArrayList<>();
+		Set<String> batch = null;
+		for (String name : new TreeSet<>(names)) {
+			if (batch == null || batch.size() >= batchSize) {
+				batch = new LinkedHashSet<>();
+				batches.add(batch);
+			}
+			batch.add(name);
+		}
+		return batches;
+	}
+
+	/**
+	 * Fetches all quotes
+	 *
+	 * @param names	quote names
+	 * @param onBatch	consumer of results of each completed batch
+	 * @return	merged results of fetched batches, without quotes of failed batches
+	 * @throws InterruptedException
+	 */
+	public Map<String, Double> fetch(Set<String> names, Consumer<Map<String, Double>> onBatch) throws InterruptedException {
+		ExecutorCompletionService<Map<String, Double>> completion = new ExecutorCompletionService<>(executor);
+		Deque<Attempt> waiting = new ArrayDeque<>();
+		Map<Future<Map<String, Double>>, Attempt> running = new HashMap<>();
+		Map<String, Double> result = new HashMap<>();
+
+		for (Set<String> batch : split(names)) {
+			waiting.add(new Attempt(batch, 0));
+		}
+
+		try {
+			while (!waiting.isEmpty() || !running.isEmpty()) {
+				while (!waiting.isEmpty() && running.size() < concurrency) {
+					Attempt a = waiting.poll();
+					a.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+					running.put(completion.submit(() -> fetcher.fetch(a.names)), a);
+				}
+
+				long next = Long.MAX_VALUE;
+				for (Attempt a : running.values()) {
+					next = Math.min(next, a.deadline);
+				}
+				Future<Map<String, Double>> f = completion.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (f != null) {
+					Attempt a = running.remove(f);
+					if (a != null) {
+						try {
+							Map<String, Double> batch = f.get();
+							result.putAll(batch);
+							onBatch.accept(batch);
+						} catch (ExecutionException e) {
+							retry(a, e.getCause(), waiting);
+						} catch (CancellationException e) {
+							retry(a, e, waiting);
+						}
+					}
+				}
+
+				// expired attempts
+				long now = System.nanoTime();
+				Iterator<Map.Entry<Future<Map<String, Double>>, Attempt>> it = running.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<Future<Map<String, Double>>, Attempt> e = it.next();
+					if (e.getValue().deadline - now <= 0) {
+						it.remove();
+						e.getKey().cancel(true);
+						retry(e.getValue(), new TimeoutException("Fetch timed out after " + timeoutMillis + "ms"), waiting);
+					}
+				}
+			}
+		} finally {
+			for (Future<Map<String, Double>> f : running.keySet()) {
+				f.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	void retry(Attempt a, Throwable cause, Deque<Attempt> waiting) {
+		if (a.number < retries) {
+			waiting.add(new Attempt(a.names, a.number + 1));
+			return;
+		}
+		System.err.println("Fetch of " + a.names + " failed: " + cause);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,184 @@
+package mp.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mp.app.marketdata.IndexedMarketData;
+import mp.app.marketdata.MarketData;
+import mp.app.marketdata.QuoteValue;
+import mp.app.measure.Measure;
+
+/**
+ * Valuation state kept between revaluations in continuous mode.
+ *
+ * The previous market data snapshot and the valuation results are retained,
+ * a new snapshot is compared against the previous one and only assets
+ * referencing a changed quote are repriced. Totals are maintained
+ * incrementally, hence the cost of an update is proportional to the number
+ * of changed quotes (plus the diff) rather than to the basket size.
+ *
+ * Snapshots of equal layouts are diffed by comparing prices of the slots
+ * referenced by the basket, resolved once per layout. Otherwise each quote
+ * of the basket is looked up by name in both snapshots.
+ *
+ * The measure is expected to depend on the asset's own quote only,
+ * as does {@link mp.app.measure.PriceMeasure}.
+ */
+public class IncrementalValuation {
+
+	final Measure measure;
+
+	final Map<Asset, Double> results = new HashMap<>();
+
+	final Map<String, List<Asset>> byQuote = new HashMap<>();
+
+	final RunningTotal total = new RunningTotal();
+
+	MarketData md;
+
+	/**
+	 * Layout {@link #slots} have been resolved against
+	 */
+	Object slotsLayout;
+
+	/**
+	 * Slots of the basket's quotes, -1 for quotes not in the market data
+	 */
+	int[] slots;
+
+	/**
+	 * Assets referencing the quote of the slot at the same position in {@link #slots}
+	 */
+	final List<List<Asset>> slotAssets = new ArrayList<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param measure	measure to calculate
+	 */
+	public IncrementalValuation(Measure measure) {
+		this.measure = measure;
+	}
+
+	/**
+	 * Full valuation, replaces the basket and the market data snapshot
+	 *
+	 * @param basket	assets basket
+	 * @param md	market data
+	 * @return	all valuated assets
+	 */
+	public Collection<Asset> reset(Set<Asset> basket, MarketData md) {
+		results.clear();
+		byQuote.clear();
+		total.clear();
+		slotsLayout = null;
+		slots = null;
+		slotAssets.clear();
+
+		this.md = md;
+		for (Asset a : basket) {
+			byQuote.computeIfAbsent(a.getQuoteName(), k -> new ArrayList<>()).add(a);
+			double v = measure.calculate(a, md);
+			results.put(a, v);
+			total.add(v);
+		}
+		return Collections.unmodifiableSet(results.keySet());
+	}
+
+	/**
+	 * Incremental valuation against a new market data snapshot,
+	 * only assets whose quotes changed will be repriced.
+	 *
+	 * @param md	new market data
+	 * @return	repriced assets
+	 */
+	public Collection<Asset> update(MarketData md) {
+		MarketData prev = this.md;
+		this.md = md;
+
+		List<Asset> changed = new ArrayList<>();
+		if (isSameLayout(prev, md)) {
+			IndexedMarketData p = (IndexedMarketData) prev;
+			IndexedMarketData n = (IndexedMarketData) md;
+			int[] slots = getSlots(n);
+			for (int i = 0; i < slots.length; i++) {
+				int slot = slots[i];
+				if (slot >= 0
+					&& Double.doubleToLongBits(p.getPrice(slot)) != Double.doubleToLongBits(n.getPrice(slot))) {
+					reprice(slotAssets.get(i), md, changed);
+				}
+			}
+			return changed;
+		}
+
+		for (Map.Entry<String, List<Asset>> e : byQuote.entrySet()) {
+			if (isChanged(prev.getQuote(e.getKey()), md.getQuote(e.getKey()))) {
+				reprice(e.getValue(), md, changed);
+			}
+		}
+		return changed;
+	}
+
+	void reprice(List<Asset> assets, MarketData md, List<Asset> changed) {
+		for (Asset a : assets) {
+			double v = measure.calculate(a, md);
+			total.replace(results.put(a, v), v);
+			changed.add(a);
+		}
+	}
+
+	static boolean isSameLayout(MarketData a, MarketData b) {
+		if (!(a instanceof IndexedMarketData) || !(b instanceof IndexedMarketData)) {
+			return false;
+		}
+		Object layout = ((IndexedMarketData) a).getLayout();
+		return layout != null && layout.equals(((IndexedMarketData) b).getLayout());
+	}
+
+	/**
+	 * @param md	market data
+	 * @return	slots of the basket's quotes in the market data's layout, resolved when the layout changes
+	 */
+	int[] getSlots(IndexedMarketData md) {
+		Object layout = md.getLayout();
+		if (slots == null || !layout.equals(slotsLayout)) {
+			slotAssets.clear();
+			int[] slots = new int[byQuote.size()];
+			int i = 0;
+			for (Map.Entry<String, List<Asset>> e : byQuote.entrySet()) {
+				slots[i++] = md.slotOf(e.getKey());
+				slotAssets.add(e.getValue());
+			}
+			this.slots = slots;
+			slotsLayout = layout;
+		}
+		return slots;
+	}
+
+	/**
+	 * @return	valuation results of the current basket
+	 */
+	public Map<Asset, Double> getResults() {
+		return Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * @return	sum of all valuation results,
+	 * 			consistent with {@link java.util.DoubleSummaryStatistics#getSum()}
+	 */
+	public double getTotal() {
+		return total.get();
+	}
+
+	static boolean isChanged(QuoteValue a, QuoteValue b) {
+		if (a == null || b == null) {
+			return a != b;
+		}
+		return Double.doubleToLongBits(a.getPrice()) != Double.doubleToLongBits(b.getPrice());
+	}
+}
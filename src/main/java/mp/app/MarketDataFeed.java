@@ -2,6 +2,7 @@ package mp.app;
 
 import static java.util.stream.Collectors.toCollection;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -20,6 +22,11 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import mp.app.marketdata.MarketData;
+import mp.app.marketdata.QuoteValue;
+import mp.app.marketdata.SharedSegment;
+import mp.app.marketdata.SnapshotFormat;
+import mp.app.metrics.PipelineMetrics;
+import mp.app.metrics.Stage;
 
 /**
  * Market data feed is supposed to fetch newest 
@@ -36,6 +43,80 @@ public abstract class MarketDataFeed {
 
 	static final String PARAM_DELAY = "-delay";
 
+	static final String PARAM_JOURNAL = "-journal";
+
+	static final String PARAM_COMPACT = "-compact";
+
+	static final String PARAM_ATOMIC = "-atomic";
+
+	static final String PARAM_METRICS = "-metrics";
+
+	static final String PARAM_BATCH_SIZE = "-batchsize";
+
+	static final String PARAM_TIMEOUT = "-timeout";
+
+	static final String PARAM_RETRIES = "-retries";
+
+	/**
+	 * Format of persisted market data
+	 */
+	MarketDataFormat format = MarketDataFormat.TEXT;
+
+	/**
+	 * Journal of changed quotes, null when the feed file is rewritten on each fetch
+	 */
+	TickJournal journal;
+
+	/**
+	 * Number of fetches between compactions of the journal
+	 */
+	int compactEvery = 60;
+
+	/**
+	 * Number of fetches since last compaction
+	 */
+	int fetches;
+
+	/**
+	 * Feed file is published by atomic rename instead of being rewritten under lock
+	 */
+	boolean atomic;
+
+	/**
+	 * Shared memory segment, in shared format
+	 */
+	SharedSegment shared;
+
+	/**
+	 * Number of quotes fetched by a single request, 0 when all quotes are fetched at once
+	 */
+	int batchSize = 0;
+
+	/**
+	 * Timeout of a request in milliseconds
+	 */
+	int timeout = 30_000;
+
+	/**
+	 * Number of retries of a failed batch
+	 */
+	int retries = 2;
+
+	/**
+	 * Maximal number of concurrent requests
+	 */
+	int concurrency = 16;
+
+	/**
+	 * Batched fetch, created on first use
+	 */
+	FetchPipeline pipeline;
+
+	/**
+	 * Quotes of the last persist, quotes of failed batches keep their values from it
+	 */
+	Map<String, Double> persisted;
+
 	/**
 	 * Entry point of the execution
 	 * 
@@ -52,6 +133,15 @@ public abstract class MarketDataFeed {
 		 */
 		List<String> list = new ArrayList<>(Arrays.asList(args));
 		isFollow = list.remove(PARAM_FOLLOW);
+		boolean isJournal = list.remove(PARAM_JOURNAL);
+		atomic = list.remove(PARAM_ATOMIC);
+		
+		try {
+			format = MarketDataFormat.parse(list);
+		} catch (IllegalArgumentException e) {
+			System.out.println(getUsage());				
+			return;
+		}
 		
 		int i = list.indexOf(PARAM_DELAY);
 		if (i >= 0) {
@@ -65,6 +155,67 @@ public abstract class MarketDataFeed {
 			}
 		}
 		
+		i = list.indexOf(PARAM_METRICS);
+		if (i >= 0) {
+			try {
+				int seconds = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);
+				PipelineMetrics.get().dumpEvery(System.out, seconds);
+			} catch (Exception e) {
+				System.out.println(getUsage());				
+				return;
+			}
+		}
+		
+		i = list.indexOf(PARAM_BATCH_SIZE);
+		if (i >= 0) {
+			try {
+				batchSize = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);				
+			} catch (Exception e) {
+				System.out.println(getUsage());				
+				return;
+			}
+		}
+		
+		i = list.indexOf(PARAM_TIMEOUT);
+		if (i >= 0) {
+			try {
+				timeout = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);				
+			} catch (Exception e) {
+				System.out.println(getUsage());				
+				return;
+			}
+		}
+		
+		i = list.indexOf(PARAM_RETRIES);
+		if (i >= 0) {
+			try {
+				retries = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);				
+			} catch (Exception e) {
+				System.out.println(getUsage());				
+				return;
+			}
+		}
+		
+		i = list.indexOf(PARAM_COMPACT);
+		if (i >= 0) {
+			try {
+				compactEvery = Integer.parseInt(list.get(i + 1));
+				list.remove(i + 1);
+				list.remove(i);				
+			} catch (Exception e) {
+				System.out.println(getUsage());				
+				return;
+			}
+		}
+		
 		if (list.size() != 1) {
 			System.out.println(getUsage());				
 			return;			
@@ -86,6 +237,10 @@ public abstract class MarketDataFeed {
 		 * End of parsing input parameters
 		 */
 		
+		if (isJournal) {
+			journal = new TickJournal(mkdata, getClass().getSimpleName());
+		}
+		
 		if (isFollow) {
 			service(mkdata, delay, System.out);
 		} else {
@@ -114,12 +269,20 @@ public abstract class MarketDataFeed {
 		/*
 		 * Fetch data
 		 */
-		Map<String, Double> map = fetch(set);
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long t = metrics.start();
+		Map<String, Double> map = batchSize > 0
+			? complete(path, set, fetchBatched(set))
+			: fetch(set);
+		metrics.record(Stage.FETCH, t);
 		
 		/*
 		 * Update file
 		 */
-		Utils.persistQuoteValuesWithLock(path, map, getClass().getSimpleName());
+		t = metrics.start();
+		persist(path, map);
+		persisted = map;
+		metrics.record(Stage.PERSIST, t);
 		
 		/*
 		 * Display statistics
@@ -133,6 +296,158 @@ public abstract class MarketDataFeed {
 		log.println();
 	}
 	
+	/**
+	 * Persists fetched market data according to the chosen format,
+	 * binary snapshot and shared memory segment are stored alongside the text feed, 
+	 * which stays the definition of the stock symbols of interest.
+	 * In journal mode only changed quotes are appended to the journal,
+	 * which is periodically compacted into the feed file.
+	 * 
+	 * @param path	text feed file
+	 * @param map	map of asset name - value pairs
+	 * @throws IOException
+	 */
+	protected void persist(Path path, Map<String, Double> map) throws IOException {
+		if (journal != null) {
+			journal.append(map);
+			if (++fetches >= compactEvery) {
+				journal.compact();
+				fetches = 0;
+			}
+			return;
+		}
+		
+		switch (format) {
+			case BINARY:
+				SnapshotFormat.write(format.alongside(path), map);
+				break;
+				
+			case SHARED:
+				publish(format.alongside(path), map);
+				break;
+				
+			default:
+				if (atomic) {
+					Utils.persistQuoteValuesAtomically(path, map, getClass().getSimpleName());
+				} else {
+					Utils.persistQuoteValuesWithLock(path, map, getClass().getSimpleName());
+				}
+		}
+	}
+	
+	/**
+	 * Writes prices in place to the shared memory segment. The segment is 
+	 * recreated when it does not exist yet or when the set of quotes changed,
+	 * readers of the previous one are notified by its stale flag.
+	 * 
+	 * @param path	segment file
+	 * @param map	map of asset name - value pairs
+	 * @throws IOException
+	 */
+	protected void publish(Path path, Map<String, Double> map) throws IOException {
+		if (shared == null && Files.exists(path)) {
+			try {
+				shared = SharedSegment.attach(path);
+			} catch (IOException e) {
+				System.err.println(e);
+			}
+		}
+		
+		if (shared == null || !shared.publish(map)) {
+			SharedSegment prev = shared;
+			shared = SharedSegment.create(path, new TreeSet<>(map.keySet()).toArray(new String[map.size()]));
+			shared.publish(map);
+			if (prev != null) {
+				prev.markStale();
+			}
+		}
+	}
+	
+	/**
+	 * Fetches the quotes in concurrent batches, see {@link FetchPipeline}.
+	 * In shared format the batches are published to the segment 
+	 * as they arrive, unless the segment has to be recreated.
+	 * 
+	 * @param names	assets names
+	 * @return	map of asset name - value pairs
+	 * @throws InterruptedException
+	 */
+	protected Map<String, Double> fetchBatched(Set<String> names) throws InterruptedException {
+		if (pipeline == null) {
+			pipeline = new FetchPipeline(this::fetch, batchSize, timeout, retries, concurrency);
+		}
+		return pipeline.fetch(names, batch -> {
+			if (format == MarketDataFormat.SHARED && journal == null && shared != null) {
+				shared.publish(batch);
+			}
+		});
+	}
+	
+	/**
+	 * Completes a batched fetch with previously persisted values of quotes
+	 * whose batches failed, so that a failed fetch never overwrites them.
+	 * In journal mode only fetched quotes are appended, the journal keeps the others.
+	 * 
+	 * @param path	text feed file
+	 * @param names	assets names
+	 * @param fetched	map of fetched asset name - value pairs
+	 * @return	map of asset name - value pairs of all assets
+	 * @throws IOException	when a quote was not fetched and has no persisted value,
+	 * 			nothing will be persisted in this cycle
+	 */
+	protected Map<String, Double> complete(Path path, Set<String> names, Map<String, Double> fetched) throws IOException {
+		if (journal != null || fetched.keySet().containsAll(names)) {
+			return fetched;
+		}
+		
+		Map<String, Double> previous = persisted != null ? persisted : getPersisted(path);
+		Map<String, Double> map = new HashMap<>(fetched);
+		for (String name : names) {
+			if (!map.containsKey(name)) {
+				Double value = previous.get(name);
+				if (value == null) {
+					throw new IOException("Fetch of " + name + " failed and no previous value is available, nothing persisted");
+				}
+				map.put(name, value);
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * @param path	text feed file
+	 * @return	quotes persisted by a previous run, empty when not available
+	 */
+	Map<String, Double> getPersisted(Path path) {
+		MarketData md = null;
+		switch (format) {
+			case TEXT:
+				md = atomic
+					? Utils.getMarketData(path)
+					: Utils.getMarketDataWithLock(path);
+				break;
+				
+			case BINARY:
+				try {
+					md = SnapshotFormat.open(format.alongside(path));
+				} catch (IOException e) {
+					System.err.println(e);
+				}
+				break;
+				
+			default:
+				break;
+		}
+		
+		Map<String, Double> map = new HashMap<>();
+		if (md != null) {
+			for (QuoteValue qv : md.getQuotes()) {
+				map.put(qv.getName(), qv.getPrice());
+			}
+		}
+		return map;
+	}
+	
 	/**
 	 * Provider-dependent logic to execute fetch of market data
 	 * 
@@ -175,7 +490,9 @@ public abstract class MarketDataFeed {
 	 * @return	set of stock symbols
 	 */
 	protected Set<String> getQuoteNames(Path path) {
-		MarketData md = Utils.getMarketDataWithLock(path);
+		MarketData md = atomic
+			? Utils.getMarketData(path)
+			: Utils.getMarketDataWithLock(path);
 		return md.getQuotes()
 			.stream()
 			.map(s -> s.getName())
@@ -196,6 +513,16 @@ public abstract class MarketDataFeed {
 			+	"Options:" + "\n"
 			+	"   -follow          continuous mode, program run infinitely and periodicaly schedules market data update" + "\n"
 			+	"   -delay <seconds> delay in seconds betweed market data updates (default 60)" + "\n"
+			+	"   -batchsize <n>   quotes are fetched by concurrent requests of at most n quotes" + "\n"
+			+	"   -timeout <ms>    with -batchsize, timeout of a request in milliseconds (default 30000)" + "\n"
+			+	"   -retries <n>     with -batchsize, retries of a failed or timed out request (default 2)" + "\n"
+			+	"   -metrics <s>     print pipeline metrics every s seconds, metrics are also exposed as MBean " + PipelineMetrics.OBJECT_NAME + "\n"
+			+	"   -atomic          publish the market data file by atomic rename of a complete new file, readers need no locking" + "\n"
+			+	"   -journal         append changed quotes to <marketdata_file>." + TickJournal.FILE_SUFFIX_JOURNAL + " instead of rewriting the market data file" + "\n"
+			+	"   -compact <n>     in journal mode, compact the journal into the market data file every n fetches (default 60)" + "\n"
+			+	"   -format <format> format of persisted market data: text (default) rewrites the market data file," + "\n"
+			+	"                    binary writes a snapshot alongside it (<basket_name>." + MarketDataFormat.BINARY.getSuffix() + ")," + "\n"
+			+	"                    shared updates prices in place in a memory-mapped segment (<basket_name>." + MarketDataFormat.SHARED.getSuffix() + ")" + "\n"
 			;
 	}
 }
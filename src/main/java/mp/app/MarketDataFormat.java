@@ -0,0 +1,80 @@
+package mp.app;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Storage formats of market data files
+ */
+public enum MarketDataFormat {
+
+	/**
+	 * Text feed file, one quote per line
+	 */
+	TEXT(BasketPricer.FILE_SUFFIX_MKDATA),
+
+	/**
+	 * Binary snapshot, see {@link mp.app.marketdata.SnapshotFormat}
+	 */
+	BINARY("snap"),
+
+	/**
+	 * Shared memory segment updated in place, see {@link mp.app.marketdata.SharedSegment}
+	 */
+	SHARED("shm");
+
+	static final String PARAM_FORMAT = "-format";
+
+	final String suffix;
+
+	MarketDataFormat(String suffix) {
+		this.suffix = suffix;
+	}
+
+	/**
+	 * @return	file suffix of the format
+	 */
+	public String getSuffix() {
+		return suffix;
+	}
+
+	/**
+	 * Resolves a market data file of this format stored alongside the given feed file,
+	 * i.e. with the feed's suffix replaced by the format's one.
+	 * 
+	 * @param feed	text feed file
+	 * @return	file of this format
+	 */
+	public Path alongside(Path feed) {
+		if (this == TEXT) {
+			return feed;
+		}
+		String name = feed.getFileName().toString();
+		String textSuffix = "." + TEXT.suffix;
+		if (name.endsWith(textSuffix)) {
+			name = name.substring(0, name.length() - textSuffix.length());
+		}
+		return feed.resolveSibling(name + "." + suffix);
+	}
+
+	/**
+	 * Extracts the format option from command line arguments
+	 * 
+	 * @param args	mutable list of arguments, the option will be removed
+	 * @return	format given in arguments or TEXT when not present
+	 * @throws IllegalArgumentException	when value of the option is missing or unknown
+	 */
+	static MarketDataFormat parse(List<String> args) {
+		int i = args.indexOf(PARAM_FORMAT);
+		if (i < 0) {
+			return TEXT;
+		}
+		if (i + 1 >= args.size()) {
+			throw new IllegalArgumentException("Missing value of " + PARAM_FORMAT);
+		}
+		MarketDataFormat format = valueOf(args.get(i + 1).toUpperCase());
+		args.remove(i + 1);
+		args.remove(i);
+		return format;
+	}
+}
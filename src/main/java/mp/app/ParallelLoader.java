@@ -0,0 +1,249 @@
+package mp.app;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.MappedFeedParser;
+import mp.app.marketdata.SymbolIndex;
+import mp.app.metrics.PipelineMetrics;
+import mp.app.metrics.Stage;
+
+/**
+ * Parallel loading of large basket and feed files.
+ *
+ * The file is split into byte ranges aligned on line boundaries, each range
+ * is mapped and parsed on the fork-join pool (by parallel streams) and
+ * the results are merged in file order. Lines failing to parse are skipped,
+ * their errors are collected per range and logged in file order after parsing,
+ * i.e. results and logging are the same as of the sequential loaders
+ * {@link Utils#getBasket(Path)} and {@link Utils#getMarketDataMappedWithLock(Path, SymbolIndex)}.
+ */
+public class ParallelLoader {
+
+	/**
+	 * Smallest range worth a task of its own
+	 */
+	static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Largest range, a range is mapped by a single buffer
+	 */
+	static final long MAX_CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * Number of ranges per worker thread, evens out uneven parsing costs
+	 */
+	static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * Result of parsing a single range
+	 */
+	static class Chunk<T> {
+
+		final T result;
+
+		final List<String> errors = new ArrayList<>();
+
+		Chunk(T result) {
+			this.result = result;
+		}
+	}
+
+	/**
+	 * Retrieves basket definition from a file, see {@link Utils#getBasket(Path)}
+	 *
+	 * @param path	path to basket file
+	 * @return	basket's content or empty set when error occurs
+	 */
+	public static Set<Asset> getBasket(Path path) {
+		return getBasket(path, chunkSizeOf(path));
+	}
+
+	static Set<Asset> getBasket(Path path, long chunkSize) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long start = metrics.start();
+		try (FileChannel channel = FileChannel.open(path)) {
+			List<Chunk<List<Asset>>> chunks = parse(channel, chunkSize, ParallelLoader::parseBasket);
+
+			Set<Asset> basket = new HashSet<>();
+			for (Chunk<List<Asset>> chunk : chunks) {
+				chunk.errors.forEach(System.err::println);
+				metrics.addRejectedLines(chunk.errors.size());
+				basket.addAll(chunk.result);
+			}
+			metrics.addParsedLines(basket.size());
+			return basket;
+		} catch (Exception e) {
+			System.err.println(e);
+			return Collections.emptySet();
+		} finally {
+			metrics.record(Stage.BASKET_LOAD, start);
+		}
+	}
+
+	/**
+	 * Imports market data from a feed file, see {@link Utils#getMarketDataMappedWithLock(Path, SymbolIndex)}
+	 *
+	 * @param path	path to the file representation
+	 * @param layout	layout of previous snapshot or null
+	 * @param lock	the file is locked while reading, otherwise it has to be published atomically
+	 * @return	an instance of market data, empty when loading failed
+	 */
+	public static ArrayMarketData getMarketData(Path path, SymbolIndex layout, boolean lock) {
+		return getMarketData(path, layout, lock, chunkSizeOf(path));
+	}
+
+	static ArrayMarketData getMarketData(Path path, SymbolIndex layout, boolean lock, long chunkSize) {
+		try (FileChannel channel = Utils.open(path, lock)) {
+			/*
+			 * Locking the channel, unlock is not explicitly done in code,
+			 * it will be automatically applied when closing the channel.
+			 */
+			if (lock) {
+				PipelineMetrics.get().lock(channel);
+			}
+
+			List<Chunk<ArrayMarketData.Builder>> chunks = parse(channel, chunkSize, ParallelLoader::parseMarketData);
+
+			ArrayMarketData.Builder builder = new ArrayMarketData.Builder(layout);
+			Utils.RejectedLines rejected = new Utils.RejectedLines();
+			for (Chunk<ArrayMarketData.Builder> chunk : chunks) {
+				chunk.errors.forEach(rejected);
+				builder.addAll(chunk.result);
+			}
+			// fails on duplicated names, as do the sequential loaders
+			ArrayMarketData md = builder.build();
+			rejected.record(md.size());
+			return md;
+		} catch (Exception e) {
+			System.err.println(e);
+		}
+
+		return new ArrayMarketData.Builder().build();
+	}
+
+	/**
+	 * Splits the file into ranges and parses them in parallel
+	 *
+	 * @return	results of the ranges in file order
+	 */
+	static <T> List<Chunk<T>> parse(FileChannel channel, long chunkSize, Function<ByteBuffer, Chunk<T>> parser) throws IOException {
+		long[] bounds = split(channel, chunkSize);
+		List<MappedByteBuffer> buffers = new ArrayList<>(bounds.length - 1);
+		for (int i = 0; i + 1 < bounds.length; i++) {
+			buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]));
+		}
+		return buffers.parallelStream()
+			.map(parser)
+			.collect(toList());
+	}
+
+	/**
+	 * Range boundaries, each range but the last ends after a line terminator
+	 *
+	 * @return	ascending offsets starting with 0 and ending with the file size
+	 */
+	static long[] split(FileChannel channel, long chunkSize) throws IOException {
+		long size = channel.size();
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer bb = ByteBuffer.allocate(4096);
+		long pos = 0;
+		while (size - pos > chunkSize) {
+			// first line terminator at or after the target offset
+			long next = -1;
+			long offset = pos + chunkSize - 1;
+			while (next < 0 && offset < size) {
+				bb.clear();
+				int n = channel.read(bb, offset);
+				if (n <= 0) {
+					break;
+				}
+				for (int i = 0; i < n && next < 0; i++) {
+					byte b = bb.get(i);
+					if (b == '\n' || b == '\r') {
+						next = offset + i + 1;
+					}
+				}
+				offset += n;
+			}
+			if (next < 0 || next - pos > MAX_CHUNK_SIZE) {
+				// a line as long as the file or beyond a single mapping
+				break;
+			}
+			bounds.add(next);
+			pos = next;
+		}
+		if (pos < size) {
+			bounds.add(size);
+		}
+		return bounds.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * @return	range size spreading the file over the worker threads
+	 */
+	static long chunkSizeOf(Path path) {
+		long size = path.toFile().length();
+		long chunks = (long) ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+		return Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / chunks + 1));
+	}
+
+	/**
+	 * Basket lines, decoded as by {@link java.nio.file.Files#lines(Path)}
+	 */
+	static Chunk<List<Asset>> parseBasket(ByteBuffer bb) {
+		Chunk<List<Asset>> chunk = new Chunk<>(new ArrayList<>());
+		Charset charset = StandardCharsets.UTF_8;
+		byte[] buf = new byte[256];
+		int to = bb.limit();
+		int pos = 0;
+		while (pos < to) {
+			int eol = pos;
+			while (eol < to && bb.get(eol) != '\n' && bb.get(eol) != '\r') {
+				eol++;
+			}
+			int len = eol - pos;
+			if (buf.length < len) {
+				buf = new byte[Math.max(len, buf.length * 2)];
+			}
+			bb.position(pos);
+			bb.get(buf, 0, len);
+			pos = eol + 1;
+
+			// a \r\n terminator leaves an empty line, skipped as such
+			String s = new String(buf, 0, len, charset).trim();
+			if (s.isEmpty() || s.startsWith("#")) {
+				continue;
+			}
+			try {
+				chunk.result.add(Asset.parse(s));
+			} catch (Exception e) {
+				chunk.errors.add(e.toString());
+			}
+		}
+		return chunk;
+	}
+
+	static Chunk<ArrayMarketData.Builder> parseMarketData(ByteBuffer bb) {
+		Chunk<ArrayMarketData.Builder> chunk = new Chunk<>(new ArrayMarketData.Builder());
+		new MappedFeedParser(Charset.defaultCharset(), chunk.errors::add)
+			.parse(bb, 0, bb.limit(), chunk.result::add);
+		return chunk;
+	}
+}
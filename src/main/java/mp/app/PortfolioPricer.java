@@ -0,0 +1,195 @@
+package mp.app;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import mp.app.marketdata.IndexedMarketData;
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+import mp.app.measure.PriceMeasure;
+
+/**
+ * Pricing of a portfolio of baskets against a single market data snapshot.
+ *
+ * The market data file is loaded once and shared by all baskets.
+ * Baskets are valuated in parallel (parallel stream across baskets),
+ * small baskets are priced sequentially within their task,
+ * large ones use the parallel valuation of {@link BasketPricer}.
+ */
+public class PortfolioPricer {
+
+	/**
+	 * Baskets up to this size are priced sequentially
+	 */
+	static final int SMALL_BASKET_SIZE = 10_000;
+
+	static final String USAGE =
+			"Usage: java " + PortfolioPricer.class.getName() + " [-options]" + " marketdata_file basket_file..." + "\n"
+		+	"\n"
+		+	"Parameters:" + "\n"
+		+	"   marketdata_file  market data file shared by all baskets" + "\n"
+		+	"   basket_file      basket definition files" + "\n"
+		+	"\n"
+		+	"Options:" + "\n"
+		+	"   " + BasketPricer.PARAM_MMAP + "            market data file is memory-mapped and parsed directly from the mapped buffer" + "\n"
+		+	"   " + BasketPricer.PARAM_PARALLEL + "        basket and market data files are split into ranges parsed in parallel, for very large files" + "\n"
+		+	"   " + MarketDataFormat.PARAM_FORMAT + " <format> market data file format: text (default) or binary" + "\n"
+		;
+
+	final BasketPricer pricer;
+
+	final Measure measure;
+
+	public PortfolioPricer() {
+		this(new BasketPricer(), new PriceMeasure());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pricer	pricer used to load market data and to price large baskets
+	 * @param measure	measure to calculate
+	 */
+	public PortfolioPricer(BasketPricer pricer, Measure measure) {
+		this.pricer = pricer;
+		this.measure = measure;
+	}
+
+	public static void main(String[] args) {
+		List<String> list = new ArrayList<>(Arrays.asList(args));
+		boolean isMapped = list.remove(BasketPricer.PARAM_MMAP);
+		boolean isParallel = list.remove(BasketPricer.PARAM_PARALLEL);
+		MarketDataFormat format = null;
+		try {
+			format = MarketDataFormat.parse(list);
+		} catch (IllegalArgumentException e) {
+			list.clear();
+		}
+
+		if (list.size() < 2) {
+			System.out.println(USAGE);
+			return;
+		}
+
+		Path mkdata = Paths.get(list.get(0));
+		List<Path> baskets = new ArrayList<>();
+		for (String str : list.subList(1, list.size())) {
+			baskets.add(Paths.get(str));
+		}
+
+		PortfolioPricer pp = new PortfolioPricer();
+		pp.pricer.mapped = isMapped;
+		pp.pricer.parallel = isParallel;
+		pp.pricer.format = format;
+		pp.valuate(baskets, mkdata, System.out);
+	}
+
+	/**
+	 * Entry point to portfolio valuation
+	 *
+	 * @param basketDefs	paths to files containing basket definitions
+	 * @param marketData	path to file containing market data (quotes)
+	 * @param out	output stream
+	 * @return	portfolio totals
+	 */
+	public double valuate(List<Path> basketDefs, Path marketData, PrintStream out) {
+		MarketData md = pricer.loadMarketData(marketData);
+
+		out.println("Valuation date-time:    " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+		out.println("Market data file:       " + marketData);
+		out.println("Baskets:                " + basketDefs.size());
+		out.println();
+
+		double[] totals = valuate(basketDefs, md);
+
+		// summed in input order, independent of thread scheduling
+		double sum = 0;
+		ReportRenderer renderer = new ReportRenderer(out, BasketPricer.REPORT_NUMBERS_FORMAT);
+		for (int i = 0; i < totals.length; i++) {
+			renderLine(renderer, basketDefs.get(i), totals[i]).newLine();
+			sum += totals[i];
+		}
+		renderer.flush();
+		out.println("----");
+		out.println(renderLine("PORTFOLIO", sum));
+		out.println();
+
+		return sum;
+	}
+
+	/**
+	 * Valuates baskets in parallel against shared market data
+	 *
+	 * @param basketDefs	paths to files containing basket definitions
+	 * @param md	market data
+	 * @return	basket totals in order of the basket files
+	 */
+	public double[] valuate(List<Path> basketDefs, MarketData md) {
+		return basketDefs
+			.parallelStream()
+			.mapToDouble(p -> valuate(p, md))
+			.toArray();
+	}
+
+	/**
+	 * Valuates single basket
+	 *
+	 * @param basketDef	path to file containing basket definition
+	 * @param md	market data
+	 * @return	basket totals, Double.NaN when the basket file cannot be read
+	 */
+	double valuate(Path basketDef, MarketData md) {
+		if (!Files.isReadable(basketDef)) {
+			System.err.println("Basket file cannot be read: " + basketDef);
+			return Double.NaN;
+		}
+
+		// loaded by the pricer's settings, its compiled basket is not shared across threads
+		if (md instanceof IndexedMarketData) {
+			CompiledBasket cb = CompiledBasket.load(basketDef, pricer::getBasket);
+			return sum(cb.valuate((IndexedMarketData) md, measure));
+		}
+
+		Set<Asset> basket = pricer.getBasket(basketDef);
+		if (basket.size() > SMALL_BASKET_SIZE) {
+			return pricer.valuate(basket, md, measure)
+				.values()
+				.stream()
+				.mapToDouble(Double::doubleValue)
+				.sum();
+		}
+
+		double sum = 0;
+		for (Asset a : basket) {
+			sum += measure.calculate(a, md);
+		}
+		return sum;
+	}
+
+	static double sum(double[] values) {
+		double sum = 0;
+		for (double v : values) {
+			sum += v;
+		}
+		return sum;
+	}
+
+	ReportRenderer renderLine(ReportRenderer renderer, Path basket, double total) {
+		return renderer
+			.left(String.valueOf(basket.getFileName()), 30)
+			.append(' ')
+			.right(total, 15);
+	}
+
+	String renderLine(String name, double total) {
+		return String.format("%-30s %15s", name, BasketPricer.REPORT_NUMBERS_FORMAT.format(total));
+	}
+}
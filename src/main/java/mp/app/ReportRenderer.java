@@ -0,0 +1,384 @@
+package mp.app;
+
+import java.io.PrintStream;
+import java.math.RoundingMode;
+import java.nio.CharBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+
+/**
+ * Renders report lines into a reusable character buffer,
+ * which is written to the output stream in large blocks.
+ *
+ * Numbers are formatted as by the given {@link DecimalFormat} (fixed number of
+ * fraction digits, grouping, symbols, prefixes and suffixes), the output is identical.
+ * Rounding (HALF_EVEN) is decided in 128-bit integer arithmetic on the exact binary value,
+ * values close to a rounding boundary, values beyond the fast path range
+ * and formats it does not support are delegated to a private copy of the format.
+ *
+ * Instances are not thread-safe, the format passed in is not used after construction.
+ */
+public class ReportRenderer {
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	static final long[] POWERS_OF_10 = {
+		1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+	};
+
+	/**
+	 * Scaled values must stay below this bound to fit the fast path
+	 */
+	static final double SCALED_LIMIT = 1e18;
+
+	static final String LINE_SEPARATOR = System.lineSeparator();
+
+	final PrintStream out;
+
+	final DecimalFormat format;
+
+	final boolean fast;
+
+	final int fractionDigits;
+
+	final int minIntegerDigits;
+
+	final int groupingSize;
+
+	final char groupingSeparator;
+
+	final char decimalSeparator;
+
+	final boolean decimalSeparatorAlwaysShown;
+
+	final char zeroDigit;
+
+	final String nan;
+
+	final String infinity;
+
+	final String positivePrefix;
+
+	final String positiveSuffix;
+
+	final String negativePrefix;
+
+	final String negativeSuffix;
+
+	char[] buf = new char[BLOCK_SIZE];
+
+	int length;
+
+	final char[] digits = new char[64];
+
+	CharBuffer view = CharBuffer.wrap(buf);
+
+	/**
+	 * Constructor
+	 *
+	 * @param out	output stream
+	 * @param format	format of numbers
+	 */
+	public ReportRenderer(PrintStream out, DecimalFormat format) {
+		this.out = out;
+		this.format = (DecimalFormat) format.clone();
+
+		DecimalFormatSymbols dfs = this.format.getDecimalFormatSymbols();
+		this.fractionDigits = this.format.getMaximumFractionDigits();
+		this.minIntegerDigits = this.format.getMinimumIntegerDigits();
+		this.groupingSize = this.format.isGroupingUsed() ? this.format.getGroupingSize() : 0;
+		this.groupingSeparator = dfs.getGroupingSeparator();
+		this.decimalSeparator = dfs.getDecimalSeparator();
+		this.decimalSeparatorAlwaysShown = this.format.isDecimalSeparatorAlwaysShown();
+		this.zeroDigit = dfs.getZeroDigit();
+		this.nan = dfs.getNaN();
+		this.infinity = dfs.getInfinity();
+		this.positivePrefix = this.format.getPositivePrefix();
+		this.positiveSuffix = this.format.getPositiveSuffix();
+		this.negativePrefix = this.format.getNegativePrefix();
+		this.negativeSuffix = this.format.getNegativeSuffix();
+
+		this.fast = this.format.getMinimumFractionDigits() == fractionDigits
+			&& fractionDigits < POWERS_OF_10.length
+			&& minIntegerDigits <= 18
+			&& this.format.getMaximumIntegerDigits() >= 19
+			&& this.format.getMultiplier() == 1
+			&& this.format.getRoundingMode() == RoundingMode.HALF_EVEN
+			&& this.format.toPattern().indexOf('E') < 0;
+	}
+
+	/**
+	 * @param s	text
+	 * @return	this renderer
+	 */
+	public ReportRenderer append(CharSequence s) {
+		int n = s.length();
+		ensure(n);
+		for (int i = 0; i < n; i++) {
+			buf[length++] = s.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * @param c	character
+	 * @return	this renderer
+	 */
+	public ReportRenderer append(char c) {
+		ensure(1);
+		buf[length++] = c;
+		return this;
+	}
+
+	/**
+	 * @param v	integer value, plain decimal form
+	 * @return	this renderer
+	 */
+	public ReportRenderer append(long v) {
+		if (v == Long.MIN_VALUE) {
+			return append(Long.toString(v));
+		}
+		if (v < 0) {
+			append('-');
+			v = -v;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v != 0);
+		ensure(n);
+		while (n > 0) {
+			buf[length++] = digits[--n];
+		}
+		return this;
+	}
+
+	/**
+	 * Text left aligned in a field, as <code>%-Ns</code>
+	 *
+	 * @param s	text
+	 * @param width	field width
+	 * @return	this renderer
+	 */
+	public ReportRenderer left(CharSequence s, int width) {
+		append(s);
+		return pad(width - s.length());
+	}
+
+	/**
+	 * @param n	number of spaces
+	 * @return	this renderer
+	 */
+	public ReportRenderer pad(int n) {
+		if (n > 0) {
+			ensure(n);
+			Arrays.fill(buf, length, length + n, ' ');
+			length += n;
+		}
+		return this;
+	}
+
+	/**
+	 * Formatted number right aligned in a field, as <code>%Ns</code>
+	 *
+	 * @param v	number
+	 * @param width	field width
+	 * @return	this renderer
+	 */
+	public ReportRenderer right(double v, int width) {
+		int start = length;
+		number(v);
+		int n = length - start;
+		if (n < width) {
+			int padding = width - n;
+			ensure(padding);
+			System.arraycopy(buf, start, buf, start + padding, n);
+			Arrays.fill(buf, start, start + padding, ' ');
+			length += padding;
+		}
+		return this;
+	}
+
+	/**
+	 * Formatted number
+	 *
+	 * @param v	number
+	 * @return	this renderer
+	 */
+	public ReportRenderer number(double v) {
+		if (Double.isNaN(v)) {
+			return append(nan);
+		}
+
+		boolean negative = v < 0 || (v == 0 && 1 / v < 0);
+		double abs = Math.abs(v);
+		if (!fast || (!Double.isInfinite(abs) && abs * POWERS_OF_10[fractionDigits] >= SCALED_LIMIT)) {
+			return append(format.format(v));
+		}
+
+		long scaled = Double.isInfinite(abs) ? 0 : scale(abs);
+		if (scaled < 0) {
+			return append(format.format(v));
+		}
+
+		append(negative ? negativePrefix : positivePrefix);
+		if (Double.isInfinite(abs)) {
+			append(infinity);
+		} else {
+			digits(scaled);
+		}
+		return append(negative ? negativeSuffix : positiveSuffix);
+	}
+
+	/**
+	 * Ends the line, full blocks are written to the output stream
+	 *
+	 * @return	this renderer
+	 */
+	public ReportRenderer newLine() {
+		append(LINE_SEPARATOR);
+		if (length >= BLOCK_SIZE) {
+			flush();
+		}
+		return this;
+	}
+
+	/**
+	 * Writes rendered content to the output stream
+	 */
+	public void flush() {
+		if (length > 0) {
+			view.clear().limit(length);
+			out.append(view);
+			length = 0;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Renders the rendered but not yet flushed content
+	 */
+	@Override
+	public String toString() {
+		return new String(buf, 0, length);
+	}
+
+	/**
+	 * Clears the rendered but not yet flushed content
+	 */
+	public void clear() {
+		length = 0;
+	}
+
+	/**
+	 * Rounds a non-negative finite value, scaled by 10^fractionDigits, to an integer.
+	 *
+	 * The format rounds the shortest decimal representation of the value
+	 * ({@link Double#toString(double)}), which differs from the exact binary value
+	 * by less than half an ulp. Both round equally unless a rounding boundary
+	 * lies within half an ulp of the exact value, such values are left to the format.
+	 *
+	 * @return	rounded scaled value or -1 when it has to be left to the format
+	 */
+	long scale(double abs) {
+		long bits = Double.doubleToRawLongBits(abs);
+		int exponent = (int) (bits >>> 52) & 0x7FF;
+		long mantissa = bits & 0xFFFFFFFFFFFFFL;
+		if (exponent == 0) {
+			exponent = 1;
+		} else {
+			mantissa |= 1L << 52;
+		}
+		int s = 1075 - exponent;
+		long p = POWERS_OF_10[fractionDigits];
+
+		if (s <= 0) {
+			// ulp >= 1, digits of the decimal representation may differ from the binary value
+			return -1;
+		}
+		if (s >= 128) {
+			// scaled value below 2^-48, far from the rounding boundary
+			return 0;
+		}
+
+		// 128-bit product hi:lo = mantissa * p, mantissa < 2^53, p < 2^27,
+		// the scaled value is hi:lo / 2^s, an ulp equals p / 2^s
+		long mh = (mantissa >>> 32) * p;
+		long ml = (mantissa & 0xFFFFFFFFL) * p;
+		long lo = (mh << 32) + ml;
+		long hi = (mh >>> 32) + (Long.compareUnsigned(lo, ml) < 0 ? 1 : 0);
+
+		// quotient and remainder of the division by 2^s
+		long q;
+		long rLo;
+		long rHi;
+		if (s < 64) {
+			q = (lo >>> s) | (hi << (64 - s));
+			rLo = lo & ((1L << s) - 1);
+			rHi = 0;
+		} else if (s == 64) {
+			q = hi;
+			rLo = lo;
+			rHi = 0;
+		} else {
+			q = hi >>> (s - 64);
+			rLo = lo;
+			rHi = hi & ((1L << (s - 64)) - 1);
+		}
+
+		// distance of the remainder from the rounding boundary 2^(s-1)
+		long hLo = s <= 64 ? 1L << (s - 1) : 0;
+		long hHi = s <= 64 ? 0 : 1L << (s - 65);
+		long dLo = rLo - hLo;
+		long dHi = rHi - hHi - (Long.compareUnsigned(rLo, hLo) < 0 ? 1 : 0);
+
+		long halfUlp = p >>> 1;
+		boolean nearBoundary = dHi == 0
+			? Long.compareUnsigned(dLo, halfUlp) <= 0
+			: dHi == -1 && dLo != 0 && Long.compareUnsigned(-dLo, halfUlp) <= 0;
+		if (nearBoundary) {
+			return -1;
+		}
+		return dHi >= 0 ? q + 1 : q;
+	}
+
+	/**
+	 * Renders scaled integer with grouping and fraction digits
+	 */
+	void digits(long scaled) {
+		int n = 0;
+		for (int i = 0; i < fractionDigits; i++) {
+			digits[n++] = (char) (zeroDigit + scaled % 10);
+			scaled /= 10;
+		}
+		if (fractionDigits > 0 || decimalSeparatorAlwaysShown) {
+			digits[n++] = decimalSeparator;
+		}
+		int integerDigits = 0;
+		do {
+			if (groupingSize > 0 && integerDigits > 0 && integerDigits % groupingSize == 0) {
+				digits[n++] = groupingSeparator;
+			}
+			digits[n++] = (char) (zeroDigit + scaled % 10);
+			scaled /= 10;
+			integerDigits++;
+		} while (scaled != 0 || integerDigits < minIntegerDigits);
+
+		ensure(n);
+		while (n > 0) {
+			buf[length++] = digits[--n];
+		}
+	}
+
+	/**
+	 * Grows the buffer, content is flushed at line ends only
+	 */
+	void ensure(int n) {
+		if (length + n > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(length + n, buf.length * 2));
+			view = CharBuffer.wrap(buf);
+		}
+	}
+}
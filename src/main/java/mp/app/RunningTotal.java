@@ -0,0 +1,100 @@
+package mp.app;
+
+/**
+ * Sum of values which are added and removed over time.
+ *
+ * Finite values are summed with compensation, non-finite values are counted,
+ * hence removing a NaN or an infinity restores the finite sum.
+ */
+public class RunningTotal {
+
+	/*
+	 * Compensated sum of finite values
+	 * plus counters of non-finite values
+	 */
+	double sum;
+
+	double compensation;
+
+	int nanCount;
+
+	int posInfCount;
+
+	int negInfCount;
+
+	/**
+	 * @param v	value to add
+	 */
+	public void add(double v) {
+		if (Double.isNaN(v)) {
+			nanCount++;
+		} else if (v == Double.POSITIVE_INFINITY) {
+			posInfCount++;
+		} else if (v == Double.NEGATIVE_INFINITY) {
+			negInfCount++;
+		} else {
+			sum(v);
+		}
+	}
+
+	/**
+	 * @param v	previously added value to remove
+	 */
+	public void remove(double v) {
+		if (Double.isNaN(v)) {
+			nanCount--;
+		} else if (v == Double.POSITIVE_INFINITY) {
+			posInfCount--;
+		} else if (v == Double.NEGATIVE_INFINITY) {
+			negInfCount--;
+		} else {
+			sum(-v);
+		}
+	}
+
+	/**
+	 * @param prev	previously added value
+	 * @param v	its replacement
+	 */
+	public void replace(double prev, double v) {
+		remove(prev);
+		add(v);
+	}
+
+	/**
+	 * @return	sum of the values,
+	 * 			consistent with {@link java.util.DoubleSummaryStatistics#getSum()}
+	 */
+	public double get() {
+		if (nanCount > 0 || (posInfCount > 0 && negInfCount > 0)) {
+			return Double.NaN;
+		} else if (posInfCount > 0) {
+			return Double.POSITIVE_INFINITY;
+		} else if (negInfCount > 0) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return sum + compensation;
+	}
+
+	/**
+	 * Removes all values
+	 */
+	public void clear() {
+		sum = compensation = 0;
+		nanCount = posInfCount = negInfCount = 0;
+	}
+
+	/**
+	 * Neumaier summation, keeps the rounding error of repeated
+	 * additions and removals bounded
+	 */
+	void sum(double v) {
+		double t = sum + v;
+		if (Math.abs(sum) >= Math.abs(v)) {
+			compensation += (sum - t) + v;
+		} else {
+			compensation += (v - t) + sum;
+		}
+		sum = t;
+	}
+}
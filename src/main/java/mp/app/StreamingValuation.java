@@ -0,0 +1,352 @@
+package mp.app;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+import mp.app.metrics.PipelineMetrics;
+
+/**
+ * Valuation of baskets which do not fit in memory.
+ *
+ * The basket file is read line by line, each asset is priced as soon as
+ * it is parsed and only its name and value are kept. Rows are reported
+ * either in basket file order, holding nothing, or sorted by asset name
+ * (as the in-memory valuation does) by an external merge sort: sorted runs
+ * of bounded size are spilled to temporary files (in <code>java.io.tmpdir</code>),
+ * which are merged while reporting. At most {@link #DEFAULT_FAN_IN} runs are open at once,
+ * more runs are first merged into longer runs in intermediate passes.
+ *
+ * Totals are accumulated in report order, hence sorted reports have the same
+ * totals as the in-memory valuation. Lines failing to parse are skipped and
+ * logged as by {@link Utils#getBasket(Path)}.
+ */
+public class StreamingValuation {
+
+	/**
+	 * Receiver of valuated rows
+	 */
+	@FunctionalInterface
+	public interface RowSink {
+		void accept(String name, double value);
+	}
+
+	/**
+	 * Default number of rows sorted in memory
+	 */
+	static final int DEFAULT_RUN_SIZE = 1 << 18;
+
+	/**
+	 * Default number of runs merged at once, bounds open files and read buffers
+	 */
+	static final int DEFAULT_FAN_IN = 64;
+
+	static final Comparator<Row> BY_NAME = (a, b) -> a.name.compareTo(b.name);
+
+	static class Row {
+
+		final String name;
+
+		final double value;
+
+		Row(String name, double value) {
+			this.name = name;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Sorted run spilled to a temporary file, positioned at its current row
+	 */
+	static class Run implements Closeable {
+
+		final Path path;
+
+		final int order;
+
+		BufferedReader in;
+
+		Row row;
+
+		Run(Path path, int order) {
+			this.path = path;
+			this.order = order;
+		}
+
+		/**
+		 * @return	false when the run is exhausted
+		 */
+		boolean next() throws IOException {
+			if (in == null) {
+				in = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+			}
+			String line = in.readLine();
+			if (line == null) {
+				row = null;
+				return false;
+			}
+			int i = line.lastIndexOf(' ');
+			row = new Row(line.substring(0, i), Double.parseDouble(line.substring(i + 1)));
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+			Files.deleteIfExists(path);
+		}
+	}
+
+	final Measure measure;
+
+	final boolean sorted;
+
+	final int runSize;
+
+	/**
+	 * Number of runs merged at once
+	 */
+	int fanIn = DEFAULT_FAN_IN;
+
+	/**
+	 * Number of rows valuated to NaN by the last valuation
+	 */
+	long nanCount;
+
+	/**
+	 * Number of runs spilled by the last valuation
+	 */
+	int spilledRuns;
+
+	/**
+	 * Number of intermediate merge passes of the last valuation
+	 */
+	int mergePasses;
+
+	/**
+	 * Constructor
+	 *
+	 * @param measure	measure to calculate
+	 * @param sorted	rows are reported sorted by asset name, otherwise in basket file order
+	 */
+	public StreamingValuation(Measure measure, boolean sorted) {
+		this(measure, sorted, DEFAULT_RUN_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param measure	measure to calculate
+	 * @param sorted	rows are reported sorted by asset name, otherwise in basket file order
+	 * @param runSize	number of rows sorted in memory
+	 */
+	public StreamingValuation(Measure measure, boolean sorted, int runSize) {
+		this.measure = measure;
+		this.sorted = sorted;
+		this.runSize = runSize;
+	}
+
+	/**
+	 * Valuates a basket file
+	 *
+	 * @param basketDef	path to file containing basket definition
+	 * @param md	market data
+	 * @param sink	receiver of the rows, in report order
+	 * @return	totals accumulated in report order
+	 * @throws IOException	when the basket or a temporary file cannot be read or written
+	 */
+	public DoubleSummaryStatistics valuate(Path basketDef, MarketData md, RowSink sink) throws IOException {
+		DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+		nanCount = 0;
+		spilledRuns = 0;
+		mergePasses = 0;
+		RowSink report = (name, value) -> {
+			stats.accept(value);
+			if (Double.isNaN(value)) {
+				nanCount++;
+			}
+			sink.accept(name, value);
+		};
+
+		if (!sorted) {
+			read(basketDef, md, report);
+			return stats;
+		}
+
+		List<Row> rows = new ArrayList<>();
+		List<Run> runs = new ArrayList<>();
+		try {
+			try {
+				read(basketDef, md, (name, value) -> {
+					rows.add(new Row(name, value));
+					if (rows.size() >= runSize) {
+						try {
+							runs.add(spill(rows, runs.size()));
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			if (runs.isEmpty()) {
+				rows.sort(BY_NAME);
+				rows.forEach(r -> report.accept(r.name, r.value));
+			} else {
+				if (!rows.isEmpty()) {
+					runs.add(spill(rows, runs.size()));
+				}
+				spilledRuns = runs.size();
+				merge(runs, report);
+			}
+		} finally {
+			for (Run run : runs) {
+				run.close();
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Parses and prices the basket line by line
+	 */
+	void read(Path basketDef, MarketData md, RowSink sink) throws IOException {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long parsed = 0;
+		try (BufferedReader in = Files.newBufferedReader(basketDef, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String s = line.trim();
+				if (s.isEmpty() || s.startsWith("#")) {
+					continue;
+				}
+				Asset asset;
+				try {
+					asset = Asset.parse(s);
+				} catch (Exception e) {
+					System.err.println(e);
+					metrics.addRejectedLines(1);
+					continue;
+				}
+				parsed++;
+				sink.accept(asset.getName(), measure.calculate(asset, md));
+			}
+		} finally {
+			metrics.addParsedLines(parsed);
+		}
+	}
+
+	/**
+	 * Sorts rows and writes them to a temporary file, the list is cleared
+	 */
+	Run spill(List<Row> rows, int order) throws IOException {
+		rows.sort(BY_NAME);
+		Run run = new Run(Files.createTempFile("valuation", ".run"), order);
+		try (BufferedWriter out = Files.newBufferedWriter(run.path, StandardCharsets.UTF_8)) {
+			for (Row r : rows) {
+				write(out, r.name, r.value);
+			}
+		} catch (IOException e) {
+			run.close();
+			throw e;
+		}
+		rows.clear();
+		return run;
+	}
+
+	static void write(BufferedWriter out, String name, double value) throws IOException {
+		// asset names do not contain white spaces, values round trip exactly
+		out.write(name);
+		out.write(' ');
+		out.write(Double.toString(value));
+		out.newLine();
+	}
+
+	/**
+	 * Merges sorted runs with at most {@link #fanIn} runs open at once,
+	 * rows of equal names are reported in run order. Runs are replaced
+	 * by the runs of intermediate passes, the list holds the runs to be closed.
+	 */
+	void merge(List<Run> runs, RowSink sink) throws IOException {
+		while (runs.size() > fanIn) {
+			// consecutive runs are merged, so that run order is kept
+			List<Run> merged = new ArrayList<>();
+			try {
+				for (int from = 0; from < runs.size(); from += fanIn) {
+					merged.add(mergeToRun(runs.subList(from, Math.min(from + fanIn, runs.size())), merged.size()));
+				}
+			} catch (IOException | RuntimeException e) {
+				for (Run run : merged) {
+					run.close();
+				}
+				throw e;
+			}
+			for (Run run : runs) {
+				run.close();
+			}
+			runs.clear();
+			runs.addAll(merged);
+			mergePasses++;
+		}
+		mergeRuns(runs, sink);
+	}
+
+	/**
+	 * Merges sorted runs into a new run
+	 */
+	Run mergeToRun(List<Run> runs, int order) throws IOException {
+		Run run = new Run(Files.createTempFile("valuation", ".run"), order);
+		try (BufferedWriter out = Files.newBufferedWriter(run.path, StandardCharsets.UTF_8)) {
+			mergeRuns(runs, (name, value) -> {
+				try {
+					write(out, name, value);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			run.close();
+			throw e.getCause();
+		} catch (IOException e) {
+			run.close();
+			throw e;
+		}
+		return run;
+	}
+
+	/**
+	 * Merges sorted runs in a single pass, rows of equal names are reported in run order
+	 */
+	void mergeRuns(List<Run> runs, RowSink sink) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(),
+			Comparator.comparing((Run r) -> r.row, BY_NAME).thenComparingInt(r -> r.order));
+		for (Run run : runs) {
+			if (run.next()) {
+				queue.add(run);
+			}
+		}
+		while (!queue.isEmpty()) {
+			Run run = queue.poll();
+			sink.accept(run.row.name, run.row.value);
+			if (run.next()) {
+				queue.add(run);
+			}
+		}
+	}
+}
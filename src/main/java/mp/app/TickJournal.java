@@ -0,0 +1,275 @@
+package mp.app;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import mp.app.marketdata.QuoteValue;
+import mp.app.metrics.PipelineMetrics;
+
+/**
+ * Append-only journal of quote changes on top of a base feed file.
+ *
+ * The feed appends only changed quotes to the journal file
+ * (<code>&lt;feed_file&gt;.journal</code>), one line per tick:
+ * <pre>sequence timestamp quote_name quote_value</pre>
+ * Periodically the journal is compacted, i.e. the current state is written
+ * to the base feed file (with the last sequence number in its header)
+ * and the journal is truncated.
+ *
+ * Readers replay the base feed plus journal entries with sequence numbers
+ * above the base's one. Both readers and compaction lock the base file first
+ * and the journal second, appends lock the journal only, hence readers
+ * always see a consistent state.
+ */
+public class TickJournal {
+
+	static final String FILE_SUFFIX_JOURNAL = "journal";
+
+	static final String SEQUENCE_HEADER = "# Sequence: ";
+
+	final Path base;
+
+	final Path journal;
+
+	final String origin;
+
+	/**
+	 * Current state as known by the writer
+	 */
+	Map<String, Double> quotes;
+
+	/**
+	 * Last written sequence number
+	 */
+	long sequence;
+
+	/**
+	 * Number of entries appended since last compaction
+	 */
+	int appended;
+
+	/**
+	 * Result of a replay
+	 */
+	public static class State {
+
+		final Map<String, Double> quotes;
+
+		final long sequence;
+
+		State(Map<String, Double> quotes, long sequence) {
+			this.quotes = quotes;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return	quote name - value pairs
+		 */
+		public Map<String, Double> getQuotes() {
+			return quotes;
+		}
+
+		/**
+		 * @return	sequence number of the last applied tick
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param base	base feed file
+	 * @param origin	name of saving agent
+	 */
+	public TickJournal(Path base, String origin) {
+		this.base = base;
+		this.journal = journalOf(base);
+		this.origin = origin;
+	}
+
+	/**
+	 * @param base	base feed file
+	 * @return	journal file of the feed
+	 */
+	public static Path journalOf(Path base) {
+		return base.resolveSibling(base.getFileName() + "." + FILE_SUFFIX_JOURNAL);
+	}
+
+	/**
+	 * Replays base feed file and the journal tail
+	 *
+	 * @param base	base feed file
+	 * @return	current state
+	 * @throws IOException
+	 */
+	public static State replay(Path base) throws IOException {
+		Map<String, Double> quotes = new LinkedHashMap<>();
+		long baseSequence = 0;
+		long sequence;
+
+		try (
+			FileChannel channel = FileChannel.open(base, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			BufferedReader in = new BufferedReader(
+				new InputStreamReader(
+					Channels.newInputStream(channel)));
+		) {
+			/*
+			 * Lock of the base file is kept until the journal has been read,
+			 * so the compaction can't interfere.
+			 */
+			PipelineMetrics.get().lock(channel);
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith(SEQUENCE_HEADER)) {
+					baseSequence = Long.parseLong(line.substring(SEQUENCE_HEADER.length()).trim());
+				} else if (!line.isEmpty() && !line.startsWith("#")) {
+					QuoteValue qv = QuoteValue.parse(line);
+					quotes.put(qv.getName(), qv.getPrice());
+				}
+			}
+			sequence = baseSequence;
+
+			Path journal = journalOf(base);
+			if (Files.exists(journal)) {
+				try (
+					FileChannel jch = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					BufferedReader jin = new BufferedReader(
+						new InputStreamReader(
+							Channels.newInputStream(jch)));
+				) {
+					PipelineMetrics.get().lock(jch);
+					while ((line = jin.readLine()) != null) {
+						String[] ts = line.trim().split("\\s+");
+						if (ts.length < 4) {
+							continue;
+						}
+						try {
+							long seq = Long.parseLong(ts[0]);
+							if (seq > baseSequence) {
+								quotes.put(ts[2], Double.parseDouble(ts[3]));
+								sequence = Math.max(sequence, seq);
+							}
+						} catch (NumberFormatException e) {
+							System.err.println(e + ", journal entry parsing failed: " + line);
+						}
+					}
+				}
+			}
+		}
+
+		return new State(quotes, sequence);
+	}
+
+	/**
+	 * Initializes writer's state from the files
+	 *
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		State state = replay(base);
+		quotes = state.quotes;
+		sequence = state.sequence;
+		appended = 0;
+	}
+
+	/**
+	 * Appends quotes which differ from the current state to the journal
+	 *
+	 * @param update	fetched quote name - value pairs
+	 * @return	number of appended entries
+	 * @throws IOException
+	 */
+	public int append(Map<String, Double> update) throws IOException {
+		if (quotes == null) {
+			open();
+		}
+
+		String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bos);
+		ReportRenderer renderer = new ReportRenderer(out, Utils.FORMAT);
+		long seq = sequence;
+		int count = 0;
+		for (Map.Entry<String, Double> e : update.entrySet()) {
+			if (!Objects.equals(quotes.get(e.getKey()), e.getValue())) {
+				renderer.append(++seq).append(' ').append(timestamp).append(' ');
+				Utils.renderLine(renderer, e).newLine();
+				count++;
+			}
+		}
+		renderer.flush();
+
+		if (count > 0) {
+			try (FileChannel channel = FileChannel.open(journal,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				PipelineMetrics.get().lock(channel);
+				ByteBuffer buf = ByteBuffer.wrap(bos.toByteArray());
+				while (buf.hasRemaining()) {
+					channel.write(buf);
+				}
+			}
+			quotes.putAll(update);
+			sequence = seq;
+			appended += count;
+		}
+		return count;
+	}
+
+	/**
+	 * Writes current state to the base feed file and truncates the journal
+	 *
+	 * @throws IOException
+	 */
+	public void compact() throws IOException {
+		if (quotes == null) {
+			open();
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bos);
+		Utils.printQuoteValues(out, quotes, origin, SEQUENCE_HEADER + sequence);
+		out.flush();
+
+		try (FileChannel channel = FileChannel.open(base, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			PipelineMetrics.get().lock(channel);
+
+			channel.truncate(0);
+			ByteBuffer buf = ByteBuffer.wrap(bos.toByteArray());
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			channel.force(false);
+
+			try (FileChannel jch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				PipelineMetrics.get().lock(jch);
+				jch.truncate(0);
+			}
+		}
+		appended = 0;
+	}
+
+	/**
+	 * @return	number of entries appended since last compaction
+	 */
+	public int getAppended() {
+		return appended;
+	}
+}
@@ -10,13 +10,16 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,18 +28,28 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.IndexedMarketData;
+import mp.app.marketdata.MappedFeedParser;
 import mp.app.marketdata.MarketData;
 import mp.app.marketdata.QuoteValue;
+import mp.app.marketdata.SnapshotFormat;
+import mp.app.marketdata.SymbolIndex;
+import mp.app.metrics.PipelineMetrics;
+import mp.app.metrics.Stage;
 
 /**
  * Utility methods 
  */
 public class Utils {
 	
-	static final NumberFormat FORMAT;
+	static final DecimalFormat FORMAT;
+	
+	static final String TIMESTAMP_HEADER = "# Timestamp: ";
 	
 	static {
 		DecimalFormatSymbols dfs = new DecimalFormatSymbols();
@@ -58,10 +71,51 @@ public class Utils {
 	 * @return	an instance of market data 
 	 */
 	public static MarketData getMarketDataWithLock(Path path) {
+		return getMarketData(path, true);
+	}
+	
+	/**
+	 * Lock-free variant of {@link #getMarketDataWithLock(Path)} for files published
+	 * by {@link #persistQuoteValuesAtomically(Path, Map, String)}. The file is replaced
+	 * by an atomic rename, an opened file always contains a complete snapshot,
+	 * hence reader never blocks nor is blocked by the writer. 
+	 * 
+	 * @param path	path to the file representation
+	 * @return	an instance of market data 
+	 */
+	public static MarketData getMarketData(Path path) {
+		return getMarketData(path, false);
+	}
+	
+	/**
+	 * Logs and counts quote lines rejected while loading a feed, rejected lines are
+	 * priced to NaN, hence each loaded quote is counted either as parsed or as rejected
+	 */
+	static class RejectedLines implements Consumer<String> {
+
+		int count;
+
+		@Override
+		public void accept(String message) {
+			System.err.println(message);
+			count++;
+		}
+
+		/**
+		 * @param quotes	number of loaded quotes, including rejected ones
+		 */
+		void record(int quotes) {
+			PipelineMetrics metrics = PipelineMetrics.get();
+			metrics.addParsedLines(quotes - count);
+			metrics.addRejectedLines(count);
+		}
+	}
+
+	static MarketData getMarketData(Path path, boolean lock) {
 		Map<String, QuoteValue> quotes = new HashMap<>();
 		
 		try (
-			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			FileChannel channel = open(path, lock);
 			BufferedReader in = new BufferedReader(
 				new InputStreamReader(
 					Channels.newInputStream(channel)));
@@ -70,27 +124,134 @@ public class Utils {
 			 * Locking the channel, unlock is not explicitly done in code,
 			 * it will be automatically applied when closing the channel.
 			 */
-			channel.lock(); 
+			if (lock) {
+				PipelineMetrics.get().lock(channel); 
+			}
 			
+			RejectedLines rejected = new RejectedLines();
 			Map<String, QuoteValue> map = in.lines()
 				.map(String::trim)
 				.filter(s -> !s.isEmpty())
 				.filter(s -> !s.startsWith("#"))
-				.map(s -> { 
-					try {
-						return QuoteValue.parse(s);
-					} catch (Exception e) {
-						System.err.println(e);
-						return null;
-					}
-				})
-				.filter(Objects::nonNull)
+				.map(s -> QuoteValue.parse(s, rejected))
  				.collect(toMap(q -> q.getName(), Function.identity()));
 			quotes.putAll(map);
+			rejected.record(map.size());
+		} catch (Exception e) {
+			System.err.println(e);
+		}
+		
+		return of(quotes);
+	}
+	
+	/**
+	 * Memory-mapped variant of {@link #getMarketDataWithLock(Path)}.
+	 * The file is scanned directly in the mapped buffer by {@link MappedFeedParser},
+	 * the results (including NaN for unparsable values and skipped comments)
+	 * are the same as of the reader based variant. Quotes are stored in 
+	 * an {@link ArrayMarketData}, i.e. without per-quote objects.
+	 * 
+	 * @param path	path to the file representation
+	 * @return	an instance of market data 
+	 */
+	public static MarketData getMarketDataMappedWithLock(Path path) {
+		return getMarketDataMappedWithLock(path, null);
+	}
+	
+	/**
+	 * Memory-mapped load reusing the symbol layout of a previous snapshot 
+	 * when the quote names did not change
+	 * 
+	 * @param path	path to the file representation
+	 * @param layout	layout of previous snapshot or null
+	 * @return	an instance of market data 
+	 */
+	public static ArrayMarketData getMarketDataMappedWithLock(Path path, SymbolIndex layout) {
+		return getMarketDataMapped(path, layout, true);
+	}
+	
+	/**
+	 * Lock-free variant of {@link #getMarketDataMappedWithLock(Path, SymbolIndex)} for files
+	 * published by {@link #persistQuoteValuesAtomically(Path, Map, String)}
+	 * 
+	 * @param path	path to the file representation
+	 * @param layout	layout of previous snapshot or null
+	 * @return	an instance of market data 
+	 */
+	public static ArrayMarketData getMarketDataMapped(Path path, SymbolIndex layout) {
+		return getMarketDataMapped(path, layout, false);
+	}
+	
+	static ArrayMarketData getMarketDataMapped(Path path, SymbolIndex layout, boolean lock) {
+		try (FileChannel channel = open(path, lock)) {
+			/*
+			 * Locking the channel, unlock is not explicitly done in code,
+			 * it will be automatically applied when closing the channel.
+			 */
+			if (lock) {
+				PipelineMetrics.get().lock(channel); 
+			}
+			
+			ArrayMarketData.Builder builder = new ArrayMarketData.Builder(layout);
+			RejectedLines rejected = new RejectedLines();
+			new MappedFeedParser(Charset.defaultCharset(), rejected).parse(channel, builder::add);
+			// fails on duplicated names, as does toMap collector of the reader based variant
+			ArrayMarketData md = builder.build();
+			rejected.record(md.size());
+			return md;
 		} catch (Exception e) {
 			System.err.println(e);
 		}
 		
+		return new ArrayMarketData.Builder().build();
+	}
+	
+	/**
+	 * Exclusive lock requires the channel to be writable
+	 */
+	static FileChannel open(Path path, boolean lock) throws IOException {
+		return lock
+			? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+			: FileChannel.open(path, StandardOpenOption.READ);
+	}
+	
+	/**
+	 * Maps a binary market data snapshot, see {@link SnapshotFormat}.
+	 * Snapshots are replaced atomically by the writer, hence no locking is needed.
+	 * 
+	 * @param path	path to the snapshot file
+	 * @return	an instance of market data, empty when the snapshot cannot be read
+	 */
+	public static IndexedMarketData getMarketDataSnapshot(Path path) {
+		try {
+			return SnapshotFormat.open(path);
+		} catch (Exception e) {
+			System.err.println(e);
+			return new ArrayMarketData.Builder().build();
+		}
+	}
+	
+	/**
+	 * Imports the market data from a base feed file and its tick journal,
+	 * see {@link TickJournal}. Errors are ignored as in {@link #getMarketDataWithLock(Path)}.
+	 * 
+	 * @param path	path to the base feed file
+	 * @return	an instance of market data 
+	 */
+	public static MarketData getMarketDataJournaled(Path path) {
+		ArrayMarketData.Builder builder = new ArrayMarketData.Builder();
+		try {
+			TickJournal.replay(path)
+				.getQuotes()
+				.forEach(builder::add);
+		} catch (Exception e) {
+			System.err.println(e);
+			builder = new ArrayMarketData.Builder();
+		}
+		return builder.build();
+	}
+	
+	static MarketData of(Map<String, QuoteValue> quotes) {
 		return new MarketData() {		
 			@Override
 			public QuoteValue getQuote(String name) {
@@ -122,26 +283,104 @@ public class Utils {
 			 * Locking the channel, unlock is not explicitly done in code,
 			 * it will be automatically applied when closing the channel.
 			 */			
-			channel.lock();
-
-			Stream.of(
-					"################################	"
-				,	"# Market Data File					"
-				, 	"# Origin: " + origin
-				,	"# Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
-				,	"#									"	
-				,	"# Syntax: quote_name quote_value	"
-				, 	"################################ 	"
-			).forEach(out::println);
+			PipelineMetrics.get().lock(channel);
 
-			out.println();
-			
-			quotes.entrySet().stream()
-				.map(Utils::renderLine)
-				.forEach(out::println);
+			printQuoteValues(out, quotes, origin);
 		}
 	}	
 	
+	/**
+	 * Publishes market data to a feed file without locking. The content is written 
+	 * to a temporary file in the same directory, which is then atomically renamed 
+	 * to the destination, so readers always see either the previous or the new 
+	 * complete file and never block the writer. 
+	 * 
+	 * Note that replacing a file opened by another process fails on Windows.
+	 * 
+	 * @param path	destination file
+	 * @param quotes	market data (quotes)
+	 * @param origin	name of saving agent
+	 * @throws IOException
+	 */
+	public static void persistQuoteValuesAtomically(Path path, Map<String, Double> quotes, String origin) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (
+			FileOutputStream fos = new FileOutputStream(tmp.toFile(), false);
+			PrintStream out = new PrintStream(fos);
+		) {
+			printQuoteValues(out, quotes, origin);
+			out.flush();
+			fos.getFD().sync();
+		}
+		Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Prints market data in feed file format
+	 * 
+	 * @param out	output stream
+	 * @param quotes	market data (quotes)
+	 * @param origin	name of saving agent
+	 * @param headers	additional header lines
+	 */
+	static void printQuoteValues(PrintStream out, Map<String, Double> quotes, String origin, String... headers) {
+		Stream.of(
+				"################################	"
+			,	"# Market Data File					"
+			, 	"# Origin: " + origin
+			,	TIMESTAMP_HEADER + LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME)
+		).forEach(out::println);
+		
+		Stream.of(headers).forEach(out::println);
+		
+		Stream.of(
+				"#									"	
+			,	"# Syntax: quote_name quote_value	"
+			, 	"################################ 	"
+		).forEach(out::println);
+
+		out.println();
+		
+		ReportRenderer renderer = new ReportRenderer(out, FORMAT);
+		for (Map.Entry<String, Double> e : quotes.entrySet()) {
+			renderLine(renderer, e).newLine();
+		}
+		renderer.flush();
+	}
+	
+	/**
+	 * Reads the creation time of a feed file from its timestamp header
+	 * 
+	 * @param path	feed file
+	 * @return	creation time in microseconds since epoch or -1 when not available
+	 */
+	static long getTimestampMicros(Path path) {
+		try (BufferedReader in = Files.newBufferedReader(path)) {
+			String line;
+			while ((line = in.readLine()) != null && (line = line.trim()).startsWith("#")) {
+				if (line.startsWith(TIMESTAMP_HEADER.trim())) {
+					LocalDateTime t = LocalDateTime.parse(
+						line.substring(TIMESTAMP_HEADER.trim().length()).trim(), DateTimeFormatter.ISO_DATE_TIME);
+					return toMicros(t.atZone(ZoneId.systemDefault()).toInstant());
+				}
+			}
+		} catch (Exception e) {
+			// file being replaced or without header
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return	current time in microseconds since epoch
+	 */
+	static long nowMicros() {
+		return toMicros(Instant.now());
+	}
+	
+	static long toMicros(Instant instant) {
+		return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+	}
+	
 	/**
 	 * Retrieves basket definition from a file
 	 * 
@@ -149,8 +388,10 @@ public class Utils {
 	 * @return	basket's content or empty set when error occurs
 	 */
 	public static Set<Asset> getBasket(Path path) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long start = metrics.start();
 		try (Stream<String> stream = Files.lines(path)) {
-			return stream
+			Set<Asset> basket = stream
 				.map(String::trim)
 				.filter(s -> !s.isEmpty())
 				.filter(s -> !s.startsWith("#"))
@@ -159,17 +400,36 @@ public class Utils {
 						return Asset.parse(s);
 					} catch (Exception e) {
 						System.err.println(e);
+						metrics.addRejectedLines(1);
 						return null;
 					}
 				})
 				.filter(Objects::nonNull)
 				.collect(toCollection(HashSet::new));
+			metrics.addParsedLines(basket.size());
+			return basket;
 		} catch (Exception e) {
 			System.err.println(e);
 			return Collections.emptySet();
+		} finally {
+			metrics.record(Stage.BASKET_LOAD, start);
 		}
 	}
 	
+	/**
+	 * Renders the same line as {@link #renderLine(Map.Entry)} 
+	 * 
+	 * @param renderer	renderer using {@link #FORMAT}
+	 * @param e	quote name - value pair
+	 * @return	renderer
+	 */
+	static ReportRenderer renderLine(ReportRenderer renderer, Map.Entry<String, Double> e) {
+		return renderer
+			.left(e.getKey(), 10)
+			.append(' ')
+			.number(e.getValue());
+	}
+	
 	static String renderLine(Map.Entry<String, Double> e) {
 		String str = String.format("%-10s %s", e.getKey(), FORMAT.format(e.getValue()));		
 		return str;
@@ -0,0 +1,250 @@
+package mp.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import mp.app.metrics.PipelineMetrics;
+
+/**
+ * Cache of valuation results keyed by versions of the basket and market data files.
+ *
+ * A version is a {@link Fingerprint} of the file (size, modification time and content hash),
+ * hence results are reused whenever the same files are valuated again, e.g. after spurious
+ * watcher events. Least recently used results are evicted when the capacity is exceeded.
+ * Hits and misses are counted by {@link PipelineMetrics}.
+ */
+public class ValuationCache {
+
+	/**
+	 * Version of a file
+	 */
+	public static class Fingerprint {
+
+		final Path path;
+
+		final long size;
+
+		final long modified;
+
+		final long hash;
+
+		Fingerprint(Path path, long size, long modified, long hash) {
+			this.path = path;
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+
+		/**
+		 * Reads the file's attributes and computes CRC-32 of its content
+		 *
+		 * @param path	file
+		 * @return	fingerprint of the file's current version
+		 * @throws IOException	when the file cannot be read
+		 */
+		public static Fingerprint of(Path path) throws IOException {
+			long modified = Files.getLastModifiedTime(path).toMillis();
+			CRC32 crc = new CRC32();
+			long size = 0;
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				ByteBuffer bb = ByteBuffer.allocateDirect(1 << 16);
+				int n;
+				while ((n = channel.read(bb)) >= 0) {
+					bb.flip();
+					crc.update(bb);
+					bb.clear();
+					size += n;
+				}
+			}
+			return new Fingerprint(path.toAbsolutePath().normalize(), size, modified, crc.getValue());
+		}
+
+		/**
+		 * Cheap check whether the file has been modified since the fingerprint was taken
+		 *
+		 * @return	true when size and modification time did not change
+		 */
+		public boolean isCurrent() {
+			try {
+				return Files.size(path) == size
+					&& Files.getLastModifiedTime(path).toMillis() == modified;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Fingerprint)) {
+				return false;
+			}
+			Fingerprint f = (Fingerprint) o;
+			return path.equals(f.path)
+				&& size == f.size
+				&& modified == f.modified
+				&& hash == f.hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + Long.hashCode(hash);
+		}
+
+		@Override
+		public String toString() {
+			return this.getClass().getSimpleName()
+				+ "[" + "path=" + path + ",size=" + size + ",modified=" + modified + ",hash=" + Long.toHexString(hash) + "]";
+		}
+	}
+
+	/**
+	 * Valuation results in report order with their totals
+	 */
+	public static class Result {
+
+		final List<Map.Entry<Asset, Double>> entries;
+
+		final DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+
+		final long nanCount;
+
+		/**
+		 * Constructor, sorts the results by asset names and accumulates totals in that order
+		 *
+		 * @param results	valuation results
+		 */
+		public Result(Map<Asset, Double> results) {
+			List<Map.Entry<Asset, Double>> list = new ArrayList<>(results.entrySet());
+			list.sort((a, b) -> a.getKey().getName().compareTo(b.getKey().getName()));
+			list.forEach(e -> stats.accept(e.getValue()));
+			entries = Collections.unmodifiableList(list);
+			nanCount = BasketPricer.countNaN(results.values());
+		}
+
+		/**
+		 * @return	asset - value pairs sorted by asset name
+		 */
+		public List<Map.Entry<Asset, Double>> getEntries() {
+			return entries;
+		}
+
+		/**
+		 * @return	totals
+		 */
+		public DoubleSummaryStatistics getStats() {
+			return stats;
+		}
+
+		/**
+		 * @return	number of assets valuated to NaN
+		 */
+		public long getNanCount() {
+			return nanCount;
+		}
+	}
+
+	final int capacity;
+
+	final LinkedHashMap<List<Fingerprint>, Result> results;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity	maximal number of cached results
+	 */
+	public ValuationCache(int capacity) {
+		this.capacity = capacity;
+		this.results = new LinkedHashMap<List<Fingerprint>, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Fingerprint>, Result> eldest) {
+				return size() > ValuationCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Fingerprints the files of a valuation
+	 *
+	 * @param paths	basket and market data files
+	 * @return	cache key or null when a file cannot be read
+	 */
+	public static List<Fingerprint> keyOf(Path... paths) {
+		try {
+			Fingerprint[] fingerprints = new Fingerprint[paths.length];
+			for (int i = 0; i < paths.length; i++) {
+				fingerprints[i] = Fingerprint.of(paths[i]);
+			}
+			return Arrays.asList(fingerprints);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param key	cache key
+	 * @return	cached result or null
+	 */
+	public synchronized Result get(List<Fingerprint> key) {
+		Result result = results.get(key);
+		if (result != null) {
+			PipelineMetrics.get().incrementCacheHits();
+		} else {
+			PipelineMetrics.get().incrementCacheMisses();
+		}
+		return result;
+	}
+
+	/**
+	 * Stores a result, unless a file has been modified in the meantime. Files are hashed again,
+	 * since a rewrite within the granularity of modification times keeps size and time,
+	 * so the result is stored only when the loaded content equals the fingerprinted one.
+	 *
+	 * @param key	cache key taken before the files have been loaded
+	 * @param result	valuation result
+	 * @return	true when the result has been stored
+	 */
+	public boolean put(List<Fingerprint> key, Result result) {
+		// hashed outside of the lock, lookups are not blocked by reading the files
+		for (Fingerprint f : key) {
+			try {
+				if (!f.isCurrent() || !f.equals(Fingerprint.of(f.path))) {
+					return false;
+				}
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		synchronized (this) {
+			results.put(key, result);
+		}
+		return true;
+	}
+
+	/**
+	 * @return	number of cached results
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+
+	/**
+	 * Removes all cached results
+	 */
+	public synchronized void clear() {
+		results.clear();
+	}
+}
@@ -0,0 +1,172 @@
+package mp.app;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalescing scheduler of valuations in continuous mode.
+ *
+ * Change notifications only mark the basket or the market data as dirty,
+ * valuations are executed by a single worker thread. After the first notification
+ * the worker waits for the debounce window, so that a burst of notifications
+ * results in a single valuation; notifications arriving during a valuation
+ * are folded into one subsequent run. Hence at most one valuation runs at a time
+ * and a change is reported at latest after debounce window plus two valuations.
+ */
+public class ValuationScheduler implements AutoCloseable {
+
+	/**
+	 * Valuation executed by the worker
+	 */
+	public interface Task {
+
+		/**
+		 * @param basketChanged	true when the basket has been marked dirty since the previous run
+		 * @throws Exception
+		 */
+		void run(boolean basketChanged) throws Exception;
+	}
+
+	final Task task;
+
+	final long debounceNanos;
+
+	final Thread worker;
+
+	boolean basketDirty;
+
+	boolean marketDataDirty;
+
+	boolean running;
+
+	boolean closed;
+
+	/**
+	 * Number of change notifications
+	 */
+	long requests;
+
+	/**
+	 * Number of executed valuations
+	 */
+	long runs;
+
+	/**
+	 * Constructor, the worker thread is started immediately
+	 *
+	 * @param task	valuation
+	 * @param debounceMillis	debounce window in milliseconds
+	 */
+	public ValuationScheduler(Task task, long debounceMillis) {
+		this.task = task;
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+		this.worker = new Thread(this::work, "valuation");
+		this.worker.start();
+	}
+
+	/**
+	 * Marks basket and/or market data as changed
+	 *
+	 * @param basket	basket definition changed
+	 * @param marketData	market data changed
+	 */
+	public synchronized void request(boolean basket, boolean marketData) {
+		if (!basket && !marketData) {
+			return;
+		}
+		basketDirty |= basket;
+		marketDataDirty |= marketData;
+		requests++;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until there are no pending nor running valuations
+	 *
+	 * @param timeoutMillis	maximum time to wait
+	 * @return	true when idle, false on timeout
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		long left;
+		while (running || basketDirty || marketDataDirty) {
+			if ((left = deadline - System.nanoTime()) <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		}
+		return true;
+	}
+
+	/**
+	 * @return	number of change notifications
+	 */
+	public synchronized long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return	number of executed valuations
+	 */
+	public synchronized long getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Stops the worker, a running valuation is completed, pending ones are dropped.
+	 * When interrupted while waiting for the worker, the interrupt flag is restored.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	void work() {
+		while (true) {
+			boolean basket;
+			synchronized (this) {
+				try {
+					while (!closed && !basketDirty && !marketDataDirty) {
+						wait();
+					}
+					// notifications within the window are folded into this run
+					long deadline = System.nanoTime() + debounceNanos;
+					long left;
+					while (!closed && (left = deadline - System.nanoTime()) > 0) {
+						TimeUnit.NANOSECONDS.timedWait(this, left);
+					}
+				} catch (InterruptedException e) {
+					closed = true;
+				}
+				if (closed) {
+					notifyAll();
+					return;
+				}
+				basket = basketDirty;
+				basketDirty = marketDataDirty = false;
+				running = true;
+			}
+
+			try {
+				task.run(basket);
+			} catch (Throwable e) {
+				// the worker keeps running, e.g. after an OutOfMemoryError of a single valuation
+				System.err.println(e);
+			} finally {
+				synchronized (this) {
+					running = false;
+					runs++;
+					notifyAll();
+				}
+			}
+		}
+	}
+}
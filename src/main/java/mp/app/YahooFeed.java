@@ -6,6 +6,7 @@ import static java.util.stream.Collectors.toMap;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,11 @@ public class YahooFeed extends MarketDataFeed {
 	
 	static String YAHOO_DATA = "l1"; // last price, refer to 
 	
+	/**
+	 * Quotes service, may be replaced by system property <code>mp.app.yahoo.url</code>
+	 */
+	String url = System.getProperty("mp.app.yahoo.url", YAHOO_URL);
+	
 	public static void main(String[] args) throws Exception {
 		new YahooFeed().execute(args);
 	}
@@ -37,14 +43,16 @@ public class YahooFeed extends MarketDataFeed {
 	protected Map<String, Double> fetch(Set<String> names) throws Exception {
 		Set<String> orderedNames = new TreeSet<>(names);
 
-		String s = YAHOO_URL 
+		String s = url 
 			+ '?' + "s=" + orderedNames.stream().collect(joining(",")) 
 			+ '&' + "f=" + YAHOO_DATA;
-		URL url = new URL(s);
+		URLConnection connection = new URL(s).openConnection();
+		connection.setConnectTimeout(timeout);
+		connection.setReadTimeout(timeout);
 		
 		try (BufferedReader in = new BufferedReader(
 			new InputStreamReader(
-				url.openStream()))) 
+				connection.getInputStream()))) 
 		{
 			Iterator<String> it = orderedNames.iterator();		
 			Map<String, Double> ret = in.lines()
@@ -0,0 +1,175 @@
+package mp.app.marketdata;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Market data stored as a struct of arrays: a price column
+ * indexed by slots of a {@link SymbolIndex}.
+ * 
+ * No quote objects are kept, {@link #getPrice(String)} and {@link #getPrice(int)}
+ * are allocation-free, quote values requested via {@link #getQuote(String)}
+ * or {@link #getQuotes()} are created on demand.
+ */
+public class ArrayMarketData implements IndexedMarketData {
+
+	final SymbolIndex index;
+
+	final double[] prices;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param index	symbol layout
+	 * @param prices	prices by slot
+	 */
+	public ArrayMarketData(SymbolIndex index, double[] prices) {
+		if (index.size() != prices.length) {
+			throw new IllegalArgumentException("Layout size " + index.size() + " differs from prices count " + prices.length);
+		}
+		this.index = index;
+		this.prices = prices;
+	}
+
+	@Override
+	public QuoteValue getQuote(String name) {
+		int slot = index.slotOf(name);
+		return slot >= 0
+			? new QuoteValue(index.getId(slot), prices[slot])
+			: null;
+	}
+
+	@Override
+	public Collection<QuoteValue> getQuotes() {
+		return new AbstractList<QuoteValue>() {
+			@Override
+			public QuoteValue get(int slot) {
+				return new QuoteValue(index.getId(slot), prices[slot]);
+			}
+
+			@Override
+			public int size() {
+				return prices.length;
+			}
+		};
+	}
+
+	@Override
+	public double getPrice(String name) {
+		int slot = index.slotOf(name);
+		return slot >= 0 ? prices[slot] : Double.NaN;
+	}
+
+	@Override
+	public double getPriceById(int id) {
+		int slot = index.slotOfId(id);
+		return slot >= 0 ? prices[slot] : Double.NaN;
+	}
+
+	@Override
+	public double getPrice(int slot) {
+		return prices[slot];
+	}
+
+	@Override
+	public int slotOf(String name) {
+		return index.slotOf(name);
+	}
+
+	@Override
+	public int size() {
+		return prices.length;
+	}
+
+	@Override
+	public SymbolIndex getLayout() {
+		return index;
+	}
+
+	/**
+	 * @return	symbol layout of the snapshot
+	 */
+	public SymbolIndex getSymbolIndex() {
+		return index;
+	}
+
+	/**
+	 * Incremental construction of the market data, quotes
+	 * are kept in the order of addition.
+	 */
+	public static class Builder {
+
+		final SymbolIndex layout;
+
+		String[] names = new String[16];
+
+		double[] prices = new double[16];
+
+		int size;
+
+		public Builder() {
+			this(null);
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param layout	layout of a previous snapshot, it will be reused
+		 * 			when the quote names did not change
+		 */
+		public Builder(SymbolIndex layout) {
+			this.layout = layout;
+		}
+
+		/**
+		 * @param name	quote name
+		 * @param price	quote price
+		 * @return	this builder
+		 */
+		public Builder add(String name, double price) {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				prices = Arrays.copyOf(prices, size * 2);
+			}
+			names[size] = name;
+			prices[size] = price;
+			size++;
+			return this;
+		}
+
+		/**
+		 * @param other	builder whose quotes are appended
+		 * @return	this builder
+		 */
+		public Builder addAll(Builder other) {
+			for (int i = 0; i < other.size; i++) {
+				add(other.names[i], other.prices[i]);
+			}
+			return this;
+		}
+
+		/**
+		 * @return	market data snapshot
+		 * @throws IllegalStateException	when quote names are not unique
+		 */
+		public ArrayMarketData build() {
+			SymbolIndex index = isSameLayout()
+				? layout
+				: new SymbolIndex(Arrays.copyOf(names, size));
+			return new ArrayMarketData(index, Arrays.copyOf(prices, size));
+		}
+
+		boolean isSameLayout() {
+			if (layout == null || layout.size() != size) {
+				return false;
+			}
+			for (int i = 0; i < size; i++) {
+				if (!names[i].equals(layout.getName(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
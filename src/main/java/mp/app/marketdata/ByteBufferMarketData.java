@@ -0,0 +1,207 @@
+package mp.app.marketdata;
+
+import static mp.app.marketdata.SnapshotFormat.HEADER_SIZE;
+import static mp.app.marketdata.SnapshotFormat.MAGIC;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_COUNT;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_LAYOUT_HASH;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_MAGIC;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_NAMES_LENGTH;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_TABLE_SIZE;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_TIMESTAMP;
+import static mp.app.marketdata.SnapshotFormat.OFFSET_VERSION;
+import static mp.app.marketdata.SnapshotFormat.VERSION;
+import static mp.app.marketdata.SnapshotFormat.align;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Market data read directly from a buffer in {@link SnapshotFormat},
+ * e.g. a memory-mapped snapshot file.
+ * 
+ * Lookups hash and compare quote names in place, prices are read
+ * from the price column, no per-quote objects are created except 
+ * for {@link #getQuote(String)} and {@link #getQuotes()}.
+ */
+public class ByteBufferMarketData implements IndexedMarketData {
+
+	final ByteBuffer buf;
+
+	final int count;
+
+	final int mask;
+
+	final int pricesPos;
+
+	final int tablePos;
+
+	final int offsetsPos;
+
+	final int namesPos;
+
+	final Layout layout;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param buf	buffer containing a snapshot at position 0
+	 * @throws IllegalArgumentException	when the buffer does not contain a valid snapshot
+	 */
+	public ByteBufferMarketData(ByteBuffer buf) {
+		if (buf.limit() < HEADER_SIZE || buf.getInt(OFFSET_MAGIC) != MAGIC) {
+			throw new IllegalArgumentException("Not a market data snapshot");
+		}
+		if (buf.getInt(OFFSET_VERSION) != VERSION) {
+			throw new IllegalArgumentException("Unsupported snapshot version " + buf.getInt(OFFSET_VERSION));
+		}
+
+		this.buf = buf;
+		this.count = buf.getInt(OFFSET_COUNT);
+		int tableSize = buf.getInt(OFFSET_TABLE_SIZE);
+		this.mask = tableSize - 1;
+		this.pricesPos = HEADER_SIZE;
+		this.tablePos = pricesPos + 8 * count;
+		this.offsetsPos = tablePos + 4 * tableSize;
+		this.namesPos = align(offsetsPos + 4 * (count + 1));
+
+		int end = namesPos + 2 * buf.getInt(OFFSET_NAMES_LENGTH);
+		if (count < 0 || Integer.bitCount(tableSize) != 1 || end > buf.limit()) {
+			throw new IllegalArgumentException("Corrupted market data snapshot");
+		}
+		this.layout = new Layout(buf.getLong(OFFSET_LAYOUT_HASH), buf, offsetsPos, end);
+	}
+
+	@Override
+	public QuoteValue getQuote(String name) {
+		int slot = slotOf(name);
+		return slot >= 0
+			? new QuoteValue(getName(slot), getPrice(slot))
+			: null;
+	}
+
+	@Override
+	public Collection<QuoteValue> getQuotes() {
+		return new AbstractList<QuoteValue>() {
+			@Override
+			public QuoteValue get(int slot) {
+				return new QuoteValue(getName(slot), getPrice(slot));
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	@Override
+	public double getPrice(String name) {
+		int slot = slotOf(name);
+		return slot >= 0 ? getPrice(slot) : Double.NaN;
+	}
+
+	@Override
+	public double getPrice(int slot) {
+		return buf.getDouble(pricesPos + 8 * slot);
+	}
+
+	@Override
+	public int slotOf(String name) {
+		int i = SymbolIndex.mix(name.hashCode()) & mask;
+		int s;
+		while ((s = buf.getInt(tablePos + 4 * i)) != 0) {
+			if (nameEquals(s - 1, name)) {
+				return s - 1;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public Object getLayout() {
+		return layout;
+	}
+
+	/**
+	 * @param slot	slot index
+	 * @return	quote name stored in the slot
+	 */
+	public String getName(int slot) {
+		int from = buf.getInt(offsetsPos + 4 * slot);
+		int to = buf.getInt(offsetsPos + 4 * (slot + 1));
+		char[] cs = new char[to - from];
+		for (int i = 0; i < cs.length; i++) {
+			cs[i] = buf.getChar(namesPos + 2 * (from + i));
+		}
+		return new String(cs);
+	}
+
+	/**
+	 * @return	snapshot creation time (epoch millis)
+	 */
+	public long getTimestamp() {
+		return buf.getLong(OFFSET_TIMESTAMP);
+	}
+
+	boolean nameEquals(int slot, String name) {
+		int from = buf.getInt(offsetsPos + 4 * slot);
+		int to = buf.getInt(offsetsPos + 4 * (slot + 1));
+		if (to - from != name.length()) {
+			return false;
+		}
+		int pos = namesPos + 2 * from;
+		for (int i = 0; i < name.length(); i++) {
+			if (buf.getChar(pos + 2 * i) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Layout of a snapshot, two layouts are equal when the name sections
+	 * of both snapshots are identical. The name section is copied on heap,
+	 * so layouts are comparable after off-heap market data has been closed
+	 * and do not retain the buffer.
+	 */
+	static class Layout {
+
+		final long hash;
+
+		final byte[] names;
+
+		Layout(long hash, ByteBuffer buf, int from, int to) {
+			this.hash = hash;
+			this.names = new byte[to - from];
+			ByteBuffer bb = buf.duplicate();
+			bb.position(from);
+			bb.get(names);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ByteBufferMarketData.Layout)) {
+				return false;
+			}
+			Layout other = (Layout) obj;
+			return hash == other.hash
+				&& Arrays.equals(names, other.names);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash);
+		}
+	}
+}
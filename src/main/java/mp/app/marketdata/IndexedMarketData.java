@@ -0,0 +1,35 @@
+package mp.app.marketdata;
+
+/**
+ * Market data with quotes stored in dense slots, 
+ * allowing to resolve quote names once and to read prices by slot index.
+ */
+public interface IndexedMarketData extends MarketData {
+
+	/**
+	 * @param name	quote name
+	 * @return	slot of the quote or -1 when not found
+	 */
+	int slotOf(String name);
+
+	/**
+	 * @param slot	slot index
+	 * @return	price stored in the slot
+	 */
+	double getPrice(int slot);
+
+	/**
+	 * @return	number of slots
+	 */
+	int size();
+
+	/**
+	 * Layout identifies the assignment of quote names to slots.
+	 * Layouts of two snapshots are equal when they contain the same names 
+	 * in the same slots, i.e. slots resolved against one snapshot
+	 * are valid for the other one.
+	 * 
+	 * @return	layout of the snapshot
+	 */
+	Object getLayout();
+}
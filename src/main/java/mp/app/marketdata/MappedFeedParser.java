@@ -0,0 +1,290 @@
+package mp.app.marketdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Zero-copy parser of the text feed format.
+ *
+ * The file is mapped into memory and scanned byte by byte, names are
+ * tokenized and prices are parsed without creating intermediate line,
+ * token or regex objects. The semantics follow the line based parsing
+ * done by {@link QuoteValue#parse(String)}: lines are trimmed, empty lines
+ * and lines starting with '#' are skipped, tokens are separated by white spaces.
+ *
+ * Lines which cannot be handled by the fast path (exotic number syntax,
+ * missing or invalid price) are delegated to {@link QuoteValue#parse(String)},
+ * so that results - including NaN for bad values and error logging - are
+ * identical to the line based parser.
+ */
+public class MappedFeedParser {
+
+	/**
+	 * Receiver of parsed quotes
+	 */
+	@FunctionalInterface
+	public interface QuoteSink {
+		void accept(String name, double price);
+	}
+
+	/**
+	 * Largest mantissa which is exactly representable as double
+	 */
+	static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * Powers of ten exactly representable as double
+	 */
+	static final double[] POWERS_OF_10 = new double[23];
+
+	static {
+		POWERS_OF_10[0] = 1;
+		for (int i = 1; i < POWERS_OF_10.length; i++) {
+			POWERS_OF_10[i] = POWERS_OF_10[i - 1] * 10;
+		}
+	}
+
+	final Charset charset;
+
+	final Consumer<String> errors;
+
+	/**
+	 * ASCII chars are encoded as single bytes of the same value
+	 */
+	final boolean asciiCompatible;
+
+	byte[] buf = new byte[64];
+
+	/**
+	 * Constructor, names are decoded using platform default charset
+	 * (as does the reader based parsing)
+	 */
+	public MappedFeedParser() {
+		this(Charset.defaultCharset());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param charset	charset used to decode quote names
+	 */
+	public MappedFeedParser(Charset charset) {
+		this(charset, System.err::println);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param charset	charset used to decode quote names
+	 * @param errors	receiver of messages of lines failed to parse
+	 */
+	public MappedFeedParser(Charset charset, Consumer<String> errors) {
+		this.charset = charset;
+		this.errors = errors;
+		this.asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+			|| charset.equals(StandardCharsets.ISO_8859_1)
+			|| charset.equals(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Maps the channel's content and parses all quotes.
+	 * Files larger than a single mapping are processed in windows
+	 * aligned on line boundaries.
+	 *
+	 * @param channel	channel of the feed file
+	 * @param sink	receiver of the quotes
+	 * @throws IOException
+	 */
+	public void parse(FileChannel channel, QuoteSink sink) throws IOException {
+		long size = channel.size();
+		long pos = 0;
+		while (pos < size) {
+			long len = Math.min(size - pos, Integer.MAX_VALUE);
+			MappedByteBuffer mbb = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+			int end = (int) len;
+			if (pos + len < size) {
+				// cut the window after last line terminator
+				int i = end - 1;
+				while (i >= 0 && !isLineTerminator(mbb.get(i))) {
+					i--;
+				}
+				if (i >= 0) {
+					end = i + 1;
+				}
+			}
+			parse(mbb, 0, end, sink);
+			pos += end;
+		}
+	}
+
+	/**
+	 * Parses quotes from a buffer range
+	 *
+	 * @param bb	buffer
+	 * @param from	first byte (inclusive)
+	 * @param to	last byte (exclusive)
+	 * @param sink	receiver of the quotes
+	 */
+	public void parse(ByteBuffer bb, int from, int to, QuoteSink sink) {
+		int pos = from;
+		while (pos < to) {
+			// find the line
+			int eol = pos;
+			while (eol < to && !isLineTerminator(bb.get(eol))) {
+				eol++;
+			}
+			int next = eol + 1;
+			if (eol < to && bb.get(eol) == '\r' && next < to && bb.get(next) == '\n') {
+				next++;
+			}
+			parseLine(bb, pos, eol, sink);
+			pos = next;
+		}
+	}
+
+	void parseLine(ByteBuffer bb, int from, int to, QuoteSink sink) {
+		// trim
+		while (from < to && isTrimmed(bb.get(from))) {
+			from++;
+		}
+		while (to > from && isTrimmed(bb.get(to - 1))) {
+			to--;
+		}
+		if (from == to || bb.get(from) == '#') {
+			return;
+		}
+
+		// first token: name
+		int nameEnd = from;
+		while (nameEnd < to && !isWhitespace(bb.get(nameEnd))) {
+			nameEnd++;
+		}
+
+		// second token: price
+		int priceFrom = nameEnd;
+		while (priceFrom < to && isWhitespace(bb.get(priceFrom))) {
+			priceFrom++;
+		}
+		int priceTo = priceFrom;
+		while (priceTo < to && !isWhitespace(bb.get(priceTo))) {
+			priceTo++;
+		}
+
+		double price = priceFrom < priceTo
+			? parseDouble(bb, priceFrom, priceTo)
+			: Double.NaN;
+		if (Double.isNaN(price)) {
+			// slow path, keeps semantics and logging of the line parser
+			QuoteValue qv = QuoteValue.parse(decode(bb, from, to), errors);
+			sink.accept(qv.getName(), qv.getPrice());
+		} else {
+			sink.accept(name(bb, from, nameEnd), price);
+		}
+	}
+
+	/**
+	 * Parses a decimal number without exponent, whenever the result can be
+	 * computed exactly by a single floating point division. All other syntax
+	 * is delegated to {@link Double#parseDouble(String)}.
+	 *
+	 * @return	parsed value or NaN when the token is not a valid number
+	 */
+	double parseDouble(ByteBuffer bb, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		byte b = bb.get(i);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean dot = false;
+		for (; i < to; i++) {
+			b = bb.get(i);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (dot) {
+					scale++;
+				}
+				if (mantissa >= MAX_EXACT_MANTISSA || scale >= POWERS_OF_10.length) {
+					return parseDoubleSlow(bb, from, to);
+				}
+			} else if (b == '.' && !dot) {
+				dot = true;
+			} else {
+				return parseDoubleSlow(bb, from, to);
+			}
+		}
+
+		if (digits == 0) {
+			return parseDoubleSlow(bb, from, to);
+		}
+
+		double d = mantissa / POWERS_OF_10[scale];
+		return negative ? -d : d;
+	}
+
+	double parseDoubleSlow(ByteBuffer bb, int from, int to) {
+		try {
+			return Double.parseDouble(decode(bb, from, to));
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Quote name of the symbol table, ASCII names are looked up 
+	 * in the buffer without decoding
+	 */
+	String name(ByteBuffer bb, int from, int to) {
+		SymbolTable symbols = SymbolTable.get();
+		if (asciiCompatible) {
+			int i = from;
+			while (i < to && bb.get(i) >= 0) {
+				i++;
+			}
+			if (i == to) {
+				return symbols.nameOf(symbols.idOf(bb, from, to));
+			}
+		}
+		return symbols.nameOf(symbols.idOf(decode(bb, from, to)));
+	}
+
+	String decode(ByteBuffer bb, int from, int to) {
+		int len = to - from;
+		if (buf.length < len) {
+			buf = new byte[Math.max(len, buf.length * 2)];
+		}
+		for (int i = 0; i < len; i++) {
+			buf[i] = bb.get(from + i);
+		}
+		return new String(buf, 0, len, charset);
+	}
+
+	static boolean isLineTerminator(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Mirrors {@link String#trim()}
+	 */
+	static boolean isTrimmed(byte b) {
+		return b >= 0 && b <= ' ';
+	}
+
+	/**
+	 * Mirrors regex \s
+	 */
+	static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+	}
+}
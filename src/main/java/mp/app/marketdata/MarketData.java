@@ -19,6 +19,29 @@ public interface  MarketData {
 	 */
 	QuoteValue getQuote(String name);
 	
+	/**
+	 * Retrieves a quote's price
+	 * 
+	 * @param name	quote name
+	 * @return	price of the quote if found,
+	 * 			Double.NaN otherwise
+	 */
+	default double getPrice(String name) {
+		QuoteValue qv = getQuote(name);
+		return qv != null ? qv.getPrice() : Double.NaN;
+	}
+	
+	/**
+	 * Retrieves a quote's price by symbol ID
+	 * 
+	 * @param id	symbol ID of the quote name, see {@link SymbolTable}
+	 * @return	price of the quote if found,
+	 * 			Double.NaN otherwise
+	 */
+	default double getPriceById(int id) {
+		return getPrice(SymbolTable.get().nameOf(id));
+	}
+	
 	/**
 	 * @return all available quote values
 	 */
@@ -0,0 +1,143 @@
+package mp.app.marketdata;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Market data held outside of the java heap, in a direct buffer or
+ * a memory-mapped snapshot file in {@link SnapshotFormat}.
+ *
+ * The price column and the symbol hash table do not add to the live heap,
+ * hence very large symbol universes do not lengthen full garbage collections.
+ * The memory is released by {@link #close()} rather than by the garbage collector,
+ * further access throws {@link IllegalStateException}. The market data must not be
+ * closed while other threads still read it.
+ */
+public class OffHeapMarketData extends ByteBufferMarketData implements AutoCloseable {
+
+	volatile boolean closed;
+
+	/**
+	 * Constructor
+	 *
+	 * @param buf	direct or mapped buffer containing a snapshot at position 0,
+	 * 			it is owned (and released) by the market data
+	 * @throws IllegalArgumentException	when the buffer does not contain a valid snapshot
+	 */
+	public OffHeapMarketData(ByteBuffer buf) {
+		super(buf);
+	}
+
+	/**
+	 * Copies market data into a direct buffer
+	 *
+	 * @param md	market data
+	 * @return	off-heap copy of the market data
+	 */
+	public static OffHeapMarketData copyOf(MarketData md) {
+		Collection<QuoteValue> quotes = md.getQuotes();
+		String[] names = new String[quotes.size()];
+		double[] prices = new double[quotes.size()];
+		int slot = 0;
+		for (QuoteValue qv : quotes) {
+			names[slot] = qv.getName();
+			prices[slot] = qv.getPrice();
+			slot++;
+		}
+		return new OffHeapMarketData(
+			SnapshotFormat.encode(names, prices, System.currentTimeMillis(), ByteBuffer::allocateDirect));
+	}
+
+	/**
+	 * Maps a snapshot file, the mapping is released on close
+	 *
+	 * @param path	snapshot file
+	 * @return	market data backed by the mapped file
+	 * @throws IOException	when the file cannot be read or is not a valid snapshot
+	 */
+	public static OffHeapMarketData open(Path path) throws IOException {
+		return new OffHeapMarketData(SnapshotFormat.open(path).buf);
+	}
+
+	@Override
+	public double getPrice(int slot) {
+		checkOpen();
+		return super.getPrice(slot);
+	}
+
+	@Override
+	public int slotOf(String name) {
+		checkOpen();
+		return super.slotOf(name);
+	}
+
+	@Override
+	public String getName(int slot) {
+		checkOpen();
+		return super.getName(slot);
+	}
+
+	@Override
+	public long getTimestamp() {
+		checkOpen();
+		return super.getTimestamp();
+	}
+
+	@Override
+	public Object getLayout() {
+		checkOpen();
+		return super.getLayout();
+	}
+
+	/**
+	 * @return	number of bytes held off-heap
+	 */
+	public int getCapacity() {
+		return buf.capacity();
+	}
+
+	/**
+	 * @return	true when the market data has been closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Market data closed");
+		}
+	}
+
+	/**
+	 * Releases the buffer, subsequent calls have no effect
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			free(buf);
+		}
+	}
+
+	/**
+	 * Releases memory of a direct or mapped buffer via <code>sun.misc.Unsafe.invokeCleaner</code> (JDK 9+),
+	 * on older JDKs the memory is released when the buffer is garbage collected
+	 */
+	static void free(ByteBuffer buf) {
+		if (!buf.isDirect()) {
+			return;
+		}
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field f = unsafeClass.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(f.get(null), buf);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// released by the garbage collector
+		}
+	}
+}
@@ -1,20 +1,37 @@
 package mp.app.marketdata;
 
+import java.util.function.Consumer;
+
 /**
  * Representation of quote values.
  * As of now only price is supported.
  */
 public class QuoteValue {
 
+	int id;
+
 	String name;
 	
 	double price;
 	
 	public QuoteValue(String name, double price) {
-		this.name = name;
+		this(SymbolTable.get().idOf(name), price);
+	}
+
+	/**
+	 * @param id	symbol ID of the quote name, see {@link SymbolTable}
+	 * @param price	quote price
+	 */
+	public QuoteValue(int id, double price) {
+		this.id = id;
+		this.name = SymbolTable.get().nameOf(id);
 		this.price = price;
 	}
 
+	public int getId() {
+		return id;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -35,21 +52,31 @@ public class QuoteValue {
 	 * Syntax: quote_name value
 	 * 
 	 * @param str	string representation of a quote
-	 * @return		quote value instance 
-	 * @throws Exception	when parsing failed
+	 * @return		quote value instance, priced to Double.NaN when the price cannot be parsed
 	 */
 	public static QuoteValue parse(String str) {
-		String[] ts = str.split("\\s+");
-		String name = ts[0];
+		return parse(str, System.err::println);
+	}
+
+	/**
+	 * @param str	string representation of a quote
+	 * @param errors	receiver of error messages, called once for a rejected line
+	 * @return		quote value instance, priced to Double.NaN when the price cannot be parsed
+	 */
+	public static QuoteValue parse(String str, Consumer<String> errors) {
+		// name is looked up in place, tokens of the rest are as of str.split("\\s+")
+		int nameEnd = SymbolTable.nameEnd(str);
+		int id = SymbolTable.get().idOf(str, 0, nameEnd);
+		String[] ts = str.substring(nameEnd).split("\\s+");
 		double price;
 
 		try {
 			price = Double.parseDouble(ts[1]);
 		} catch (Exception e) {
-			System.err.println(e + ", quote parsing failed: " + str);
+			errors.accept(e + ", quote parsing failed: " + str);
 			price = Double.NaN;
 		}
 
-		return new QuoteValue(name, price);
+		return new QuoteValue(id, price);
 	}
 }
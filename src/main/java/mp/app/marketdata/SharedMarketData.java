@@ -0,0 +1,115 @@
+package mp.app.marketdata;
+
+import java.util.AbstractList;
+import java.util.Collection;
+
+/**
+ * Live view of a {@link SharedSegment}, prices are read from the segment
+ * on each access, i.e. updates of the feed are visible immediately.
+ *
+ * Each price is read consistently, however two reads may observe different
+ * updates of the feed. Use {@link #snapshot()} to obtain a stable copy,
+ * e.g. for a report or for comparison with a previous state.
+ */
+public class SharedMarketData implements IndexedMarketData {
+
+	final SharedSegment segment;
+
+	/**
+	 * Constructor
+	 *
+	 * @param segment	shared segment
+	 */
+	public SharedMarketData(SharedSegment segment) {
+		this.segment = segment;
+	}
+
+	@Override
+	public QuoteValue getQuote(String name) {
+		int slot = slotOf(name);
+		return slot >= 0
+			? new QuoteValue(segment.index.getId(slot), getPrice(slot))
+			: null;
+	}
+
+	@Override
+	public Collection<QuoteValue> getQuotes() {
+		return new AbstractList<QuoteValue>() {
+			@Override
+			public QuoteValue get(int slot) {
+				return new QuoteValue(segment.index.getId(slot), getPrice(slot));
+			}
+
+			@Override
+			public int size() {
+				return segment.count;
+			}
+		};
+	}
+
+	@Override
+	public double getPrice(String name) {
+		int slot = slotOf(name);
+		return slot >= 0 ? getPrice(slot) : Double.NaN;
+	}
+
+	@Override
+	public double getPriceById(int id) {
+		int slot = segment.index.slotOfId(id);
+		return slot >= 0 ? getPrice(slot) : Double.NaN;
+	}
+
+	@Override
+	public double getPrice(int slot) {
+		return segment.getPrice(slot);
+	}
+
+	@Override
+	public int slotOf(String name) {
+		return segment.index.slotOf(name);
+	}
+
+	@Override
+	public int size() {
+		return segment.count;
+	}
+
+	@Override
+	public SymbolIndex getLayout() {
+		return segment.index;
+	}
+
+	/**
+	 * Copies current prices
+	 *
+	 * @return	market data snapshot sharing the segment's layout
+	 */
+	public ArrayMarketData snapshot() {
+		double[] prices = new double[segment.count];
+		for (int slot = 0; slot < prices.length; slot++) {
+			prices[slot] = segment.getPrice(slot);
+		}
+		return new ArrayMarketData(segment.index, prices);
+	}
+
+	/**
+	 * @return	number of updates published by the feed, see {@link SharedSegment#getUpdates()}
+	 */
+	public long getUpdates() {
+		return segment.getUpdates();
+	}
+
+	/**
+	 * @return	time of the last update (epoch millis)
+	 */
+	public long getTimestamp() {
+		return segment.getTimestamp();
+	}
+
+	/**
+	 * @return	true when the segment has been replaced and has to be reopened
+	 */
+	public boolean isStale() {
+		return segment.isStale();
+	}
+}
@@ -0,0 +1,346 @@
+package mp.app.marketdata;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Memory-mapped market data segment shared by a feed and pricers running on the same host.
+ *
+ * Layout (native byte order, sections 8 bytes aligned):
+ * <pre>
+ * header       magic, version, count, names length, stale flag,
+ *              update counter, timestamp
+ * slots        (long sequence, long price bits)[count]
+ * name offsets int[count + 1], char offsets of names
+ * names        char[names length]
+ * </pre>
+ * The symbol table is fixed for the lifetime of a segment, prices are
+ * updated in place. Each slot is guarded by its own sequence counter (seqlock):
+ * the writer makes the counter odd, stores the price and makes it even again,
+ * a reader retries until it reads the same even counter before and after the price.
+ * After each batch of updates the writer increments the update counter of the header,
+ * which readers may poll to detect new prices.
+ *
+ * When the set of quotes changes, the writer creates a new segment which is atomically
+ * renamed in place and flags the previous one as stale, readers then have to reopen the file.
+ *
+ * There must be a single writer per segment.
+ */
+public class SharedSegment {
+
+	public static final int MAGIC = 0x4250534D; // "BPSM"
+
+	public static final int VERSION = 1;
+
+	static final int OFFSET_MAGIC = 0;
+
+	static final int OFFSET_VERSION = 4;
+
+	static final int OFFSET_COUNT = 8;
+
+	static final int OFFSET_NAMES_LENGTH = 12;
+
+	static final int OFFSET_STALE = 16;
+
+	static final int OFFSET_UPDATES = 24;
+
+	static final int OFFSET_TIMESTAMP = 32;
+
+	static final int HEADER_SIZE = 64;
+
+	static final int SLOT_SIZE = 16;
+
+	/**
+	 * Reads of a slot left inconsistent by a crashed writer give up after this many retries
+	 */
+	static final int MAX_RETRIES = 1 << 20;
+
+	/**
+	 * Memory fences of <code>sun.misc.Unsafe</code>, looked up reflectively
+	 */
+	static final MethodHandle LOAD_FENCE;
+
+	static final MethodHandle STORE_FENCE;
+
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field f = unsafeClass.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			Object unsafe = f.get(null);
+			MethodType type = MethodType.methodType(void.class);
+			LOAD_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", type).bindTo(unsafe);
+			STORE_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "storeFence", type).bindTo(unsafe);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	static void loadFence() {
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void storeFence() {
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	final MappedByteBuffer buf;
+
+	final int count;
+
+	final SymbolIndex index;
+
+	SharedSegment(MappedByteBuffer buf) {
+		buf.order(ByteOrder.nativeOrder());
+		if (buf.limit() < HEADER_SIZE || buf.getInt(OFFSET_MAGIC) != MAGIC) {
+			throw new IllegalArgumentException("Not a shared market data segment");
+		}
+		if (buf.getInt(OFFSET_VERSION) != VERSION) {
+			throw new IllegalArgumentException("Unsupported segment version " + buf.getInt(OFFSET_VERSION));
+		}
+
+		this.buf = buf;
+		this.count = buf.getInt(OFFSET_COUNT);
+		int offsetsPos = HEADER_SIZE + SLOT_SIZE * count;
+		int namesPos = SnapshotFormat.align(offsetsPos + 4 * (count + 1));
+		if (count < 0 || namesPos + 2 * buf.getInt(OFFSET_NAMES_LENGTH) > buf.limit()) {
+			throw new IllegalArgumentException("Corrupted shared market data segment");
+		}
+
+		String[] names = new String[count];
+		for (int slot = 0; slot < count; slot++) {
+			int from = buf.getInt(offsetsPos + 4 * slot);
+			int to = buf.getInt(offsetsPos + 4 * (slot + 1));
+			char[] cs = new char[to - from];
+			for (int i = 0; i < cs.length; i++) {
+				cs[i] = buf.getChar(namesPos + 2 * (from + i));
+			}
+			names[slot] = new String(cs);
+		}
+		this.index = new SymbolIndex(names);
+	}
+
+	/**
+	 * Creates a new segment, prices are initialized to Double.NaN. The segment
+	 * is prepared in a temporary file which is then atomically moved in place,
+	 * readers of a previous segment keep their mapping.
+	 *
+	 * @param path	segment file
+	 * @param names	quote names, slot of a quote equals its position
+	 * @return	segment mapped for writing
+	 * @throws IOException
+	 * @throws IllegalStateException	when names are not unique
+	 */
+	public static SharedSegment create(Path path, String[] names) throws IOException {
+		int count = names.length;
+		int namesLength = 0;
+		for (String name : names) {
+			namesLength += name.length();
+		}
+		int offsetsPos = HEADER_SIZE + SLOT_SIZE * count;
+		int namesPos = SnapshotFormat.align(offsetsPos + 4 * (count + 1));
+		int size = SnapshotFormat.align(namesPos + 2 * namesLength);
+
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		MappedByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+			StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		buf.order(ByteOrder.nativeOrder());
+
+		int offset = 0;
+		for (int slot = 0; slot < count; slot++) {
+			String name = names[slot];
+			buf.putLong(HEADER_SIZE + SLOT_SIZE * slot + 8, Double.doubleToRawLongBits(Double.NaN));
+			buf.putInt(offsetsPos + 4 * slot, offset);
+			for (int i = 0; i < name.length(); i++) {
+				buf.putChar(namesPos + 2 * (offset + i), name.charAt(i));
+			}
+			offset += name.length();
+		}
+		buf.putInt(offsetsPos + 4 * count, offset);
+
+		buf.putInt(OFFSET_MAGIC, MAGIC);
+		buf.putInt(OFFSET_VERSION, VERSION);
+		buf.putInt(OFFSET_COUNT, count);
+		buf.putInt(OFFSET_NAMES_LENGTH, namesLength);
+		buf.putLong(OFFSET_TIMESTAMP, System.currentTimeMillis());
+		buf.force();
+
+		Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return new SharedSegment(buf);
+	}
+
+	/**
+	 * Maps an existing segment for writing, e.g. after restart of the feed.
+	 * Slots left inconsistent by a previous writer are released.
+	 *
+	 * @param path	segment file
+	 * @return	segment mapped for writing
+	 * @throws IOException	when the file cannot be read or is not a valid segment
+	 */
+	public static SharedSegment attach(Path path) throws IOException {
+		SharedSegment segment = map(path, FileChannel.MapMode.READ_WRITE);
+		for (int slot = 0; slot < segment.count; slot++) {
+			int pos = HEADER_SIZE + SLOT_SIZE * slot;
+			long seq = segment.buf.getLong(pos);
+			if ((seq & 1) != 0) {
+				segment.buf.putLong(pos, seq + 1);
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Maps an existing segment for reading
+	 *
+	 * @param path	segment file
+	 * @return	segment mapped read-only
+	 * @throws IOException	when the file cannot be read or is not a valid segment
+	 */
+	public static SharedSegment open(Path path) throws IOException {
+		return map(path, FileChannel.MapMode.READ_ONLY);
+	}
+
+	static SharedSegment map(Path path, FileChannel.MapMode mode) throws IOException {
+		StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+			? new StandardOpenOption[] { StandardOpenOption.READ }
+			: new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+		try (FileChannel channel = FileChannel.open(path, options)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Segment too large: " + path);
+			}
+			try {
+				return new SharedSegment(channel.map(mode, 0, size));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + ": " + path);
+			}
+		}
+	}
+
+	/**
+	 * Stores quotes in place and increments the update counter
+	 *
+	 * @param quotes	quote name - value pairs
+	 * @return	false, without storing anything, when any of the quotes
+	 * 			is not part of the segment
+	 */
+	public boolean publish(Map<String, Double> quotes) {
+		for (String name : quotes.keySet()) {
+			if (index.slotOf(name) < 0) {
+				return false;
+			}
+		}
+		for (Map.Entry<String, Double> e : quotes.entrySet()) {
+			put(index.slotOf(e.getKey()), e.getValue());
+		}
+		storeFence();
+		buf.putLong(OFFSET_TIMESTAMP, System.currentTimeMillis());
+		buf.putLong(OFFSET_UPDATES, buf.getLong(OFFSET_UPDATES) + 1);
+		return true;
+	}
+
+	/**
+	 * Stores a price in a slot
+	 *
+	 * @param slot	slot index
+	 * @param price	quote price
+	 */
+	public void put(int slot, double price) {
+		int pos = HEADER_SIZE + SLOT_SIZE * slot;
+		long seq = buf.getLong(pos);
+		buf.putLong(pos, seq + 1);
+		storeFence();
+		buf.putLong(pos + 8, Double.doubleToRawLongBits(price));
+		storeFence();
+		buf.putLong(pos, seq + 2);
+	}
+
+	/**
+	 * Reads a price, retrying while the slot is being written
+	 *
+	 * @param slot	slot index
+	 * @return	price stored in the slot, Double.NaN when the slot stays inconsistent
+	 */
+	public double getPrice(int slot) {
+		int pos = HEADER_SIZE + SLOT_SIZE * slot;
+		for (int i = 0; i < MAX_RETRIES; i++) {
+			long seq = buf.getLong(pos);
+			loadFence();
+			long bits = buf.getLong(pos + 8);
+			loadFence();
+			if ((seq & 1) == 0 && seq == buf.getLong(pos)) {
+				return Double.longBitsToDouble(bits);
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Flags the segment as replaced by a new one
+	 */
+	public void markStale() {
+		storeFence();
+		buf.putInt(OFFSET_STALE, 1);
+	}
+
+	/**
+	 * @return	true when the segment has been replaced and has to be reopened
+	 */
+	public boolean isStale() {
+		boolean stale = buf.getInt(OFFSET_STALE) != 0;
+		loadFence();
+		return stale;
+	}
+
+	/**
+	 * @return	number of published updates
+	 */
+	public long getUpdates() {
+		long updates = buf.getLong(OFFSET_UPDATES);
+		loadFence();
+		return updates;
+	}
+
+	/**
+	 * @return	time of the last update (epoch millis)
+	 */
+	public long getTimestamp() {
+		return buf.getLong(OFFSET_TIMESTAMP);
+	}
+
+	/**
+	 * @return	symbol layout of the segment
+	 */
+	public SymbolIndex getSymbolIndex() {
+		return index;
+	}
+
+	/**
+	 * @return	number of slots
+	 */
+	public int size() {
+		return count;
+	}
+}
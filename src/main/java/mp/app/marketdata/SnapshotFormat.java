@@ -0,0 +1,180 @@
+package mp.app.marketdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Versioned binary snapshot format of market data.
+ * 
+ * Layout (all sections 8 bytes aligned, big endian):
+ * <pre>
+ * header       magic, version, count, table size, timestamp, 
+ *              names length, layout hash
+ * prices       double[count]
+ * hash table   int[table size], open-addressing, slot + 1 or 0 for empty bucket
+ * name offsets int[count + 1], char offsets of names
+ * names        char[names length]
+ * </pre>
+ * Quote names are stored as UTF-16 chars and hashed with {@link String#hashCode()},
+ * so that lookups in the snapshot compare and hash without decoding.
+ * 
+ * Readers access the snapshot via {@link ByteBufferMarketData} 
+ * without creating per-quote objects.
+ */
+public class SnapshotFormat {
+
+	public static final int MAGIC = 0x42504D44; // "BPMD"
+
+	public static final int VERSION = 1;
+
+	static final int OFFSET_MAGIC = 0;
+
+	static final int OFFSET_VERSION = 4;
+
+	static final int OFFSET_COUNT = 8;
+
+	static final int OFFSET_TABLE_SIZE = 12;
+
+	static final int OFFSET_TIMESTAMP = 16;
+
+	static final int OFFSET_NAMES_LENGTH = 24;
+
+	static final int OFFSET_LAYOUT_HASH = 32;
+
+	static final int HEADER_SIZE = 40;
+
+	/**
+	 * Encodes quotes in snapshot format
+	 * 
+	 * @param names	quote names, slot of a quote equals its position
+	 * @param prices	quote prices
+	 * @param timestamp	snapshot creation time (epoch millis)
+	 * @param allocator	creates buffer of given capacity, e.g. ByteBuffer::allocateDirect
+	 * @return	buffer containing the snapshot, positioned at 0
+	 * @throws IllegalStateException	when names are not unique
+	 */
+	public static ByteBuffer encode(String[] names, double[] prices, long timestamp, IntFunction<ByteBuffer> allocator) {
+		int count = names.length;
+		int tableSize = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+		int namesLength = 0;
+		for (String name : names) {
+			namesLength += name.length();
+		}
+
+		int pricesPos = HEADER_SIZE;
+		int tablePos = pricesPos + 8 * count;
+		int offsetsPos = tablePos + 4 * tableSize;
+		int namesPos = align(offsetsPos + 4 * (count + 1));
+		int size = align(namesPos + 2 * namesLength);
+
+		ByteBuffer buf = allocator.apply(size);
+
+		// names and prices
+		long layoutHash = 0xcbf29ce484222325L;
+		int offset = 0;
+		for (int slot = 0; slot < count; slot++) {
+			String name = names[slot];
+			buf.putDouble(pricesPos + 8 * slot, prices[slot]);
+			buf.putInt(offsetsPos + 4 * slot, offset);
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				buf.putChar(namesPos + 2 * (offset + i), c);
+				layoutHash = (layoutHash ^ c) * 0x100000001b3L;
+			}
+			layoutHash = (layoutHash ^ 0xFFFF) * 0x100000001b3L;
+			offset += name.length();
+		}
+		buf.putInt(offsetsPos + 4 * count, offset);
+
+		// hash table
+		int mask = tableSize - 1;
+		for (int slot = 0; slot < count; slot++) {
+			int i = SymbolIndex.mix(names[slot].hashCode()) & mask;
+			int s;
+			while ((s = buf.getInt(tablePos + 4 * i)) != 0) {
+				if (names[s - 1].equals(names[slot])) {
+					throw new IllegalStateException("Duplicate key " + names[slot]);
+				}
+				i = (i + 1) & mask;
+			}
+			buf.putInt(tablePos + 4 * i, slot + 1);
+		}
+
+		// header
+		buf.putInt(OFFSET_MAGIC, MAGIC);
+		buf.putInt(OFFSET_VERSION, VERSION);
+		buf.putInt(OFFSET_COUNT, count);
+		buf.putInt(OFFSET_TABLE_SIZE, tableSize);
+		buf.putLong(OFFSET_TIMESTAMP, timestamp);
+		buf.putInt(OFFSET_NAMES_LENGTH, namesLength);
+		buf.putLong(OFFSET_LAYOUT_HASH, layoutHash);
+
+		buf.position(0);
+		buf.limit(size);
+		return buf;
+	}
+
+	/**
+	 * Writes quotes as a snapshot file. The snapshot is written to a temporary 
+	 * file which is then atomically moved in place, so readers which mapped 
+	 * the previous snapshot are never exposed to a partially written file.
+	 * 
+	 * @param path	destination file
+	 * @param quotes	market data (quotes)
+	 * @throws IOException
+	 */
+	public static void write(Path path, Map<String, Double> quotes) throws IOException {
+		Map<String, Double> sorted = new TreeMap<>(quotes);
+		String[] names = sorted.keySet().toArray(new String[sorted.size()]);
+		double[] prices = new double[names.length];
+		for (int i = 0; i < names.length; i++) {
+			prices[i] = sorted.get(names[i]);
+		}
+
+		ByteBuffer buf = encode(names, prices, System.currentTimeMillis(), ByteBuffer::allocate);
+
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, 
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			channel.force(false);
+		}
+		Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Maps a snapshot file
+	 * 
+	 * @param path	snapshot file
+	 * @return	market data backed by the mapped file
+	 * @throws IOException	when the file cannot be read or is not a valid snapshot
+	 */
+	public static ByteBufferMarketData open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + path);
+			}
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			try {
+				return new ByteBufferMarketData(buf);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + ": " + path);
+			}
+		}
+	}
+
+	static int align(int pos) {
+		return (pos + 7) & ~7;
+	}
+}
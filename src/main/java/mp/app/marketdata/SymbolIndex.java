@@ -0,0 +1,166 @@
+package mp.app.marketdata;
+
+import java.util.Arrays;
+
+/**
+ * Immutable mapping of quote names to dense slot indexes.
+ * 
+ * Implemented as an open-addressing hash table with linear probing,
+ * the table holds slot indexes only, so lookups do not allocate.
+ * Two indexes are equal when they contain the same names in the same slots,
+ * hence market data snapshots with equal symbol sets share the layout.
+ * Names are replaced by their canonical instances of the {@link SymbolTable},
+ * slots are also resolved by symbol IDs.
+ */
+public class SymbolIndex {
+
+	final String[] names;
+
+	/**
+	 * Slot index + 1, 0 denotes an empty bucket
+	 */
+	final int[] table;
+
+	final int mask;
+
+	/**
+	 * Symbol ID by slot
+	 */
+	final int[] ids;
+
+	/**
+	 * Slot index + 1 by symbol ID, open-addressing like {@link #table},
+	 * so its size does not depend on the number of symbols of the process
+	 */
+	final int[] idTable;
+
+	int hash;
+
+	/**
+	 * Constructor, slot of a name equals its position in the array
+	 * 
+	 * @param names	quote names, the array is not modified
+	 * @throws IllegalStateException	when names are not unique
+	 */
+	public SymbolIndex(String[] names) {
+		this.names = names.clone();
+
+		int cap = Integer.highestOneBit(Math.max(2, names.length) * 2 - 1) << 1;
+		this.table = new int[cap];
+		this.idTable = new int[cap];
+		this.mask = cap - 1;
+
+		for (int slot = 0; slot < names.length; slot++) {
+			String name = names[slot];
+			int i = bucket(name);
+			while (table[i] != 0) {
+				if (names[table[i] - 1].equals(name)) {
+					throw new IllegalStateException("Duplicate key " + name);
+				}
+				i = (i + 1) & mask;
+			}
+			table[i] = slot + 1;
+		}
+
+		SymbolTable symbols = SymbolTable.get();
+		this.ids = new int[names.length];
+		for (int slot = 0; slot < names.length; slot++) {
+			ids[slot] = symbols.idOf(names[slot]);
+			this.names[slot] = symbols.nameOf(ids[slot]);
+			int i = mix(ids[slot]) & mask;
+			while (idTable[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			idTable[i] = slot + 1;
+		}
+	}
+
+	/**
+	 * @param name	quote name
+	 * @return	slot of the quote or -1 when not found
+	 */
+	public int slotOf(String name) {
+		int i = bucket(name);
+		int s;
+		while ((s = table[i]) != 0) {
+			if (names[s - 1].equals(name)) {
+				return s - 1;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id	symbol ID of a quote name
+	 * @return	slot of the quote or -1 when not found
+	 */
+	public int slotOfId(int id) {
+		int i = mix(id) & mask;
+		int s;
+		while ((s = idTable[i]) != 0) {
+			if (ids[s - 1] == id) {
+				return s - 1;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param slot	slot index
+	 * @return	symbol ID of the quote name stored in the slot
+	 */
+	public int getId(int slot) {
+		return ids[slot];
+	}
+
+	/**
+	 * @param slot	slot index
+	 * @return	quote name stored in the slot
+	 */
+	public String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * @return	number of slots
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	int bucket(String name) {
+		return mix(name.hashCode()) & mask;
+	}
+
+	/**
+	 * Spreads hash codes over the table buckets
+	 */
+	static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SymbolIndex)) {
+			return false;
+		}
+		SymbolIndex other = (SymbolIndex) obj;
+		return hashCode() == other.hashCode() && Arrays.equals(names, other.names);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = Arrays.hashCode(names);
+			hash = h;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,218 @@
+package mp.app.marketdata;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Process-wide table of quote names, assigns dense int IDs to names in order of first appearance.
+ *
+ * Names are looked up by a range of chars (or ASCII bytes) without creating a string,
+ * hence reparsing basket and feed files allocates no name strings for known symbols,
+ * and all assets and quotes referencing a symbol share its canonical name instance.
+ * Lookups are lock-free, new names are added under the table's lock.
+ * IDs are never reused, the table holds every name seen by the process.
+ */
+public class SymbolTable {
+
+	static final SymbolTable INSTANCE = new SymbolTable();
+
+	/**
+	 * Names by ID and an open-addressing hash table of ID + 1, 0 denotes an empty bucket.
+	 * A name is written before its bucket, the bucket is written with volatile semantics,
+	 * hence readers finding a bucket also see its name.
+	 */
+	static class Table {
+
+		final String[] names;
+
+		final AtomicIntegerArray buckets;
+
+		final int mask;
+
+		Table(int capacity) {
+			this.names = new String[capacity];
+			this.buckets = new AtomicIntegerArray(capacity * 2);
+			this.mask = capacity * 2 - 1;
+		}
+	}
+
+	volatile Table table = new Table(1024);
+
+	volatile int size;
+
+	/**
+	 * @return	process-wide symbol table
+	 */
+	public static SymbolTable get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param name	quote name
+	 * @return	ID of the name, a new one when the name is not known
+	 */
+	public int idOf(String name) {
+		return idOf(name, 0, name.length());
+	}
+
+	/**
+	 * @param s	chars containing a quote name
+	 * @param from	start of the name (inclusive)
+	 * @param to	end of the name (exclusive)
+	 * @return	ID of the name, a new one when the name is not known
+	 */
+	public int idOf(CharSequence s, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+
+		Table t = table;
+		int i = SymbolIndex.mix(h) & t.mask;
+		int b;
+		while ((b = t.buckets.get(i)) != 0) {
+			String name = t.names[b - 1];
+			if (name.hashCode() == h && contentEquals(name, s, from, to)) {
+				return b - 1;
+			}
+			i = (i + 1) & t.mask;
+		}
+		return add(s.subSequence(from, to).toString());
+	}
+
+	/**
+	 * @param bb	buffer containing a quote name of ASCII chars
+	 * @param from	start of the name (inclusive)
+	 * @param to	end of the name (exclusive)
+	 * @return	ID of the name, a new one when the name is not known
+	 */
+	int idOf(ByteBuffer bb, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + (bb.get(i) & 0xFF);
+		}
+
+		Table t = table;
+		int i = SymbolIndex.mix(h) & t.mask;
+		int b;
+		while ((b = t.buckets.get(i)) != 0) {
+			String name = t.names[b - 1];
+			if (name.hashCode() == h && contentEquals(name, bb, from, to)) {
+				return b - 1;
+			}
+			i = (i + 1) & t.mask;
+		}
+		char[] cs = new char[to - from];
+		for (int j = 0; j < cs.length; j++) {
+			cs[j] = (char) (bb.get(from + j) & 0xFF);
+		}
+		return add(new String(cs));
+	}
+
+	/**
+	 * @param name	quote name
+	 * @return	ID of the name or -1 when the name is not known
+	 */
+	public int find(String name) {
+		Table t = table;
+		int i = SymbolIndex.mix(name.hashCode()) & t.mask;
+		int b;
+		while ((b = t.buckets.get(i)) != 0) {
+			if (t.names[b - 1].equals(name)) {
+				return b - 1;
+			}
+			i = (i + 1) & t.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id	symbol ID
+	 * @return	canonical name instance
+	 */
+	public String nameOf(int id) {
+		return table.names[id];
+	}
+
+	/**
+	 * @return	number of known names, IDs are below this number
+	 */
+	public int size() {
+		return size;
+	}
+
+	synchronized int add(String name) {
+		int id = find(name);
+		if (id >= 0) {
+			return id;
+		}
+
+		id = size;
+		Table t = table;
+		if (id == t.names.length) {
+			Table grown = new Table(t.names.length * 2);
+			for (int j = 0; j < id; j++) {
+				insert(grown, j, t.names[j]);
+			}
+			table = t = grown;
+		}
+		insert(t, id, name);
+		size = id + 1;
+		return id;
+	}
+
+	static void insert(Table t, int id, String name) {
+		t.names[id] = name;
+		int i = SymbolIndex.mix(name.hashCode()) & t.mask;
+		while (t.buckets.get(i) != 0) {
+			i = (i + 1) & t.mask;
+		}
+		t.buckets.set(i, id + 1);
+	}
+
+	static boolean contentEquals(String name, CharSequence s, int from, int to) {
+		if (name.length() != to - from) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != s.charAt(from + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean contentEquals(String name, ByteBuffer bb, int from, int to) {
+		if (name.length() != to - from) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != (bb.get(from + i) & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * End of the leading name token of a line, i.e. of the first token
+	 * of <code>str.split("\\s+")</code>
+	 *
+	 * @param str	line of a basket or feed file
+	 * @return	index of the first whitespace char or the length of the line
+	 */
+	public static int nameEnd(String str) {
+		int end = 0;
+		while (end < str.length() && !isWhitespace(str.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Whitespace as matched by regular expression <code>\s</code>
+	 */
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+}
@@ -18,4 +18,21 @@ public interface Measure {
 	 * 			or Double.NaN when calculation failed
 	 */
 	double calculate(Asset asset, MarketData data);
+	
+	/**
+	 * Executes calculations for a whole basket in columnar form.
+	 * The default implementation falls back to the per asset calculation.
+	 * 
+	 * @param assets	asset definitions
+	 * @param quantities	quantities by asset index
+	 * @param prices	quote prices by asset index, 
+	 * 			Double.NaN when quote is not available
+	 * @param data	market data
+	 * @param out	calculated values by asset index
+	 */
+	default void calculate(Asset[] assets, double[] quantities, double[] prices, MarketData data, double[] out) {
+		for (int i = 0; i < assets.length; i++) {
+			out[i] = calculate(assets[i], data);
+		}
+	}
 }
@@ -2,7 +2,6 @@ package mp.app.measure;
 
 import mp.app.Asset;
 import mp.app.marketdata.MarketData;
-import mp.app.marketdata.QuoteValue;
 
 /**
  * Formula:
@@ -15,9 +14,18 @@ public class PriceMeasure implements Measure {
 
 	@Override
 	public double calculate(Asset c, MarketData md) {
-		QuoteValue qv = md.getQuote(c.getQuoteName());
-		return qv != null
-			? c.getQuantity() * qv.getPrice()
-			: Double.NaN;
+		return c.getQuantity() * md.getPriceById(c.getQuoteId());
 	}	
+
+	/**
+	 * Plain counted loop without branches, 
+	 * eligible for unrolling and auto-vectorization by the JIT
+	 */
+	@Override
+	public void calculate(Asset[] assets, double[] quantities, double[] prices, MarketData data, double[] out) {
+		int n = assets.length;
+		for (int i = 0; i < n; i++) {
+			out[i] = quantities[i] * prices[i];
+		}
+	}
 }
@@ -0,0 +1,34 @@
+package mp.app.metrics;
+
+/**
+ * Latencies of market data ticks in continuous mode,
+ * measured from the tick's timestamp in the market data
+ */
+public enum Latency {
+
+	/**
+	 * From the tick to the printed report
+	 */
+	TICK_TO_REPORT,
+
+	/**
+	 * From the tick to the start of the revaluation, 
+	 * i.e. change detection and debounce
+	 */
+	DETECTION,
+
+	/**
+	 * Loading of the market data
+	 */
+	PARSE,
+
+	/**
+	 * Valuation of the basket
+	 */
+	PRICE,
+
+	/**
+	 * Rendering of the report
+	 */
+	RENDER
+}
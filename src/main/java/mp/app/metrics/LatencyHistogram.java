@@ -0,0 +1,133 @@
+package mp.app.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket histogram of non-negative long values (HDR-style).
+ *
+ * Values below 2^precision are counted exactly, larger values fall into
+ * logarithmic buckets, each split into 2^(precision-1) linear sub-buckets,
+ * hence the relative error of reported values is below 2^(1-precision).
+ * All buckets are allocated upfront, recording is lock-free and allocation-free.
+ */
+public class LatencyHistogram {
+
+	static final int DEFAULT_PRECISION = 7;
+
+	final int precision;
+
+	final long exact;
+
+	final long half;
+
+	final AtomicLongArray counts;
+
+	final AtomicLong total = new AtomicLong();
+
+	final AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param precision	number of significant bits of bucket boundaries, 2 to 16
+	 */
+	public LatencyHistogram(int precision) {
+		if (precision < 2 || precision > 16) {
+			throw new IllegalArgumentException("Precision out of range: " + precision);
+		}
+		this.precision = precision;
+		this.exact = 1L << precision;
+		this.half = exact >>> 1;
+		this.counts = new AtomicLongArray((int) (exact + (64 - precision) * half));
+	}
+
+	/**
+	 * Records a value, negative values are recorded as 0
+	 *
+	 * @param value	value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		total.incrementAndGet();
+		long m;
+		while ((m = max.get()) < value && !max.compareAndSet(m, value));
+	}
+
+	int indexOf(long value) {
+		if (value < exact) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - precision;
+		return (int) (exact + (shift - 1) * half + ((value >>> shift) - half));
+	}
+
+	/**
+	 * @param index	bucket index
+	 * @return	highest value falling into the bucket
+	 */
+	long highestValueOf(int index) {
+		if (index < exact) {
+			return index;
+		}
+		long k = index - exact;
+		int shift = (int) (k / half) + 1;
+		long m = k % half + half;
+		return ((m + 1) << shift) - 1;
+	}
+
+	/**
+	 * @return	number of recorded values
+	 */
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * @return	highest recorded value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile	percentile, 0 to 100
+	 * @return	value at the percentile (highest value of its bucket, at most max), 0 when empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+}
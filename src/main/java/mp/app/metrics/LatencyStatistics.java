@@ -0,0 +1,70 @@
+package mp.app.metrics;
+
+/**
+ * Percentiles of a latency histogram, exposed as composite data by {@link PipelineMetricsMXBean}
+ */
+public class LatencyStatistics {
+
+	final String name;
+
+	final long count;
+
+	final long p50;
+
+	final long p99;
+
+	final long p999;
+
+	final long max;
+
+	LatencyStatistics(String name, LatencyHistogram h) {
+		this.name = name;
+		this.count = h.getCount();
+		this.p50 = h.getValueAtPercentile(50);
+		this.p99 = h.getValueAtPercentile(99);
+		this.p999 = h.getValueAtPercentile(99.9);
+		this.max = h.getMax();
+	}
+
+	/**
+	 * @return	latency name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return	number of samples
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return	median in milliseconds
+	 */
+	public double getP50Millis() {
+		return p50 / 1e3;
+	}
+
+	/**
+	 * @return	99th percentile in milliseconds
+	 */
+	public double getP99Millis() {
+		return p99 / 1e3;
+	}
+
+	/**
+	 * @return	99.9th percentile in milliseconds
+	 */
+	public double getP999Millis() {
+		return p999 / 1e3;
+	}
+
+	/**
+	 * @return	maximum in milliseconds
+	 */
+	public double getMaxMillis() {
+		return max / 1e3;
+	}
+}
@@ -0,0 +1,338 @@
+package mp.app.metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Process wide metrics of the pricing pipeline: stage timings,
+ * parsed and rejected lines, NaN valuations, file lock waits,
+ * valuation counts, cache hits, skipped reloads and tick latencies (in microseconds).
+ *
+ * The instance is registered in the platform MBean server
+ * on first use, see {@link #OBJECT_NAME}. Recording is lock-free.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+
+	public static final String OBJECT_NAME = "mp.app:type=PipelineMetrics";
+
+	static final PipelineMetrics INSTANCE = register(new PipelineMetrics());
+
+	final LongAdder[] stageCounts = new LongAdder[Stage.values().length];
+
+	final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+
+	final AtomicLongArray stageMaxNanos = new AtomicLongArray(Stage.values().length);
+
+	final LongAdder parsedLines = new LongAdder();
+
+	final LongAdder rejectedLines = new LongAdder();
+
+	final LongAdder nanPricedAssets = new LongAdder();
+
+	final LongAdder lockAcquisitions = new LongAdder();
+
+	final LongAdder lockWaitNanos = new LongAdder();
+
+	final LongAdder valuations = new LongAdder();
+
+	final LongAdder revaluations = new LongAdder();
+
+	final LongAdder cacheHits = new LongAdder();
+
+	final LongAdder cacheMisses = new LongAdder();
+
+	final LongAdder skippedReloads = new LongAdder();
+
+	final LatencyHistogram[] latencies = new LatencyHistogram[Latency.values().length];
+
+	PipelineMetrics() {
+		for (int i = 0; i < stageCounts.length; i++) {
+			stageCounts[i] = new LongAdder();
+			stageNanos[i] = new LongAdder();
+		}
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return	process wide metrics
+	 */
+	public static PipelineMetrics get() {
+		return INSTANCE;
+	}
+
+	static PipelineMetrics register(PipelineMetrics metrics) {
+		try {
+			ManagementFactory.getPlatformMBeanServer()
+				.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+		} catch (Exception e) {
+			System.err.println(e);
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return	start time of a stage
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records execution of a stage
+	 *
+	 * @param stage	pipeline stage
+	 * @param startNanos	start time of the stage as returned by {@link #start()}
+	 * @return	elapsed time in nanoseconds
+	 */
+	public long record(Stage stage, long startNanos) {
+		long nanos = System.nanoTime() - startNanos;
+		int i = stage.ordinal();
+		stageCounts[i].increment();
+		stageNanos[i].add(nanos);
+		long max;
+		while ((max = stageMaxNanos.get(i)) < nanos && !stageMaxNanos.compareAndSet(i, max, nanos));
+		return nanos;
+	}
+
+	/**
+	 * Acquires an exclusive lock of the channel, measuring the wait time
+	 *
+	 * @param channel	file channel
+	 * @return	acquired lock
+	 * @throws IOException
+	 */
+	public FileLock lock(FileChannel channel) throws IOException {
+		long start = System.nanoTime();
+		FileLock lock = channel.lock();
+		lockWaitNanos.add(System.nanoTime() - start);
+		lockAcquisitions.increment();
+		return lock;
+	}
+
+	/**
+	 * Records a latency sample
+	 *
+	 * @param latency	latency kind
+	 * @param micros	latency in microseconds
+	 */
+	public void record(Latency latency, long micros) {
+		latencies[latency.ordinal()].record(micros);
+	}
+
+	/**
+	 * @param latency	latency kind
+	 * @return	histogram of the latency
+	 */
+	public LatencyHistogram getHistogram(Latency latency) {
+		return latencies[latency.ordinal()];
+	}
+
+	public void addParsedLines(long n) {
+		parsedLines.add(n);
+	}
+
+	public void addRejectedLines(long n) {
+		rejectedLines.add(n);
+	}
+
+	public void addNanPricedAssets(long n) {
+		nanPricedAssets.add(n);
+	}
+
+	public void incrementValuations() {
+		valuations.increment();
+	}
+
+	public void incrementRevaluations() {
+		revaluations.increment();
+	}
+
+	public void incrementCacheHits() {
+		cacheHits.increment();
+	}
+
+	public void incrementCacheMisses() {
+		cacheMisses.increment();
+	}
+
+	public void incrementSkippedReloads() {
+		skippedReloads.increment();
+	}
+
+	@Override
+	public List<StageStatistics> getStages() {
+		List<StageStatistics> list = new ArrayList<>();
+		for (Stage stage : Stage.values()) {
+			list.add(getStage(stage));
+		}
+		return list;
+	}
+
+	@Override
+	public List<LatencyStatistics> getLatencies() {
+		List<LatencyStatistics> list = new ArrayList<>();
+		for (Latency latency : Latency.values()) {
+			list.add(new LatencyStatistics(latency.name(), getHistogram(latency)));
+		}
+		return list;
+	}
+
+	/**
+	 * @param stage	pipeline stage
+	 * @return	timings of the stage
+	 */
+	public StageStatistics getStage(Stage stage) {
+		int i = stage.ordinal();
+		return new StageStatistics(stage.name(), stageCounts[i].sum(), stageNanos[i].sum(), stageMaxNanos.get(i));
+	}
+
+	@Override
+	public long getParsedLines() {
+		return parsedLines.sum();
+	}
+
+	@Override
+	public long getRejectedLines() {
+		return rejectedLines.sum();
+	}
+
+	@Override
+	public long getNanPricedAssets() {
+		return nanPricedAssets.sum();
+	}
+
+	@Override
+	public long getLockAcquisitions() {
+		return lockAcquisitions.sum();
+	}
+
+	@Override
+	public double getLockWaitMillis() {
+		return lockWaitNanos.sum() / 1e6;
+	}
+
+	@Override
+	public long getValuations() {
+		return valuations.sum();
+	}
+
+	@Override
+	public long getRevaluations() {
+		return revaluations.sum();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public long getSkippedReloads() {
+		return skippedReloads.sum();
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < stageCounts.length; i++) {
+			stageCounts[i].reset();
+			stageNanos[i].reset();
+			stageMaxNanos.set(i, 0);
+		}
+		parsedLines.reset();
+		rejectedLines.reset();
+		nanPricedAssets.reset();
+		lockAcquisitions.reset();
+		lockWaitNanos.reset();
+		valuations.reset();
+		revaluations.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+		skippedReloads.reset();
+		for (LatencyHistogram h : latencies) {
+			h.reset();
+		}
+	}
+
+	/**
+	 * Prints the metrics
+	 *
+	 * @param out	output stream
+	 */
+	public void dump(PrintStream out) {
+		synchronized (out) {
+			print(out);
+		}
+	}
+
+	void print(PrintStream out) {
+		out.println("Metrics:");
+		for (StageStatistics s : getStages()) {
+			out.println(String.format("   %-16s count %8d, total %12.3fms, mean %10.3fms, max %10.3fms",
+				s.getName(), s.getCount(), s.getTotalMillis(), s.getMeanMillis(), s.getMaxMillis()));
+		}
+		out.println(String.format("   %-16s parsed %d, rejected %d", "LINES", getParsedLines(), getRejectedLines()));
+		out.println(String.format("   %-16s count %d, wait %.3fms", "LOCKS", getLockAcquisitions(), getLockWaitMillis()));
+		out.println(String.format("   %-16s valuations %d, revaluations %d, NaN priced assets %d",
+			"VALUATIONS", getValuations(), getRevaluations(), getNanPricedAssets()));
+		out.println(String.format("   %-16s hits %d, misses %d", "CACHE", getCacheHits(), getCacheMisses()));
+		out.println(String.format("   %-16s skipped %d", "RELOADS", getSkippedReloads()));
+		printLatencies(out);
+		out.println();
+	}
+
+	/**
+	 * Prints tick latencies
+	 *
+	 * @param out	output stream
+	 */
+	public void dumpLatencies(PrintStream out) {
+		synchronized (out) {
+			out.println("Latencies:");
+			printLatencies(out);
+			out.println();
+		}
+	}
+
+	void printLatencies(PrintStream out) {
+		for (LatencyStatistics s : getLatencies()) {
+			out.println(String.format("   %-16s count %8d, p50 %10.3fms, p99 %10.3fms, p99.9 %10.3fms, max %10.3fms",
+				s.getName(), s.getCount(), s.getP50Millis(), s.getP99Millis(), s.getP999Millis(), s.getMaxMillis()));
+		}
+	}
+
+	/**
+	 * Starts periodic printing of the metrics by a daemon thread
+	 *
+	 * @param out	output stream
+	 * @param seconds	interval in seconds
+	 * @return	executor of the dumps
+	 */
+	public ScheduledExecutorService dumpEvery(PrintStream out, int seconds) {
+		ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		service.scheduleAtFixedRate(() -> dump(out), seconds, seconds, TimeUnit.SECONDS);
+		return service;
+	}
+}
@@ -0,0 +1,75 @@
+package mp.app.metrics;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link PipelineMetrics},
+ * registered as <code>mp.app:type=PipelineMetrics</code>
+ */
+public interface PipelineMetricsMXBean {
+
+	/**
+	 * @return	timings of pipeline stages
+	 */
+	List<StageStatistics> getStages();
+
+	/**
+	 * @return	tick to report latencies of continuous mode and their breakdown
+	 */
+	List<LatencyStatistics> getLatencies();
+
+	/**
+	 * @return	number of successfully parsed basket and market data lines
+	 */
+	long getParsedLines();
+
+	/**
+	 * @return	number of basket and market data lines which failed to parse
+	 */
+	long getRejectedLines();
+
+	/**
+	 * @return	number of reported assets valuated to NaN
+	 */
+	long getNanPricedAssets();
+
+	/**
+	 * @return	number of acquired file locks
+	 */
+	long getLockAcquisitions();
+
+	/**
+	 * @return	total time spent waiting for file locks in milliseconds
+	 */
+	double getLockWaitMillis();
+
+	/**
+	 * @return	number of full valuations
+	 */
+	long getValuations();
+
+	/**
+	 * @return	number of incremental revaluations
+	 */
+	long getRevaluations();
+
+	/**
+	 * @return	number of valuations served by the valuation cache
+	 */
+	long getCacheHits();
+
+	/**
+	 * @return	number of valuations missed by the valuation cache
+	 */
+	long getCacheMisses();
+
+	/**
+	 * @return	number of change notifications skipped in continuous mode, files content unchanged
+	 */
+	long getSkippedReloads();
+
+	/**
+	 * Resets all metrics
+	 */
+	void reset();
+}
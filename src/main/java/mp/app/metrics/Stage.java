@@ -0,0 +1,37 @@
+package mp.app.metrics;
+
+/**
+ * Timed stages of the pricing pipeline
+ */
+public enum Stage {
+
+	/**
+	 * Loading and parsing of a basket definition file
+	 */
+	BASKET_LOAD,
+
+	/**
+	 * Loading of market data, including lock waits
+	 */
+	MARKET_DATA_LOAD,
+
+	/**
+	 * Valuation of the basket
+	 */
+	PRICING,
+
+	/**
+	 * Rendering of the report
+	 */
+	RENDERING,
+
+	/**
+	 * Fetch of market data from the provider
+	 */
+	FETCH,
+
+	/**
+	 * Persisting fetched market data
+	 */
+	PERSIST
+}
@@ -0,0 +1,57 @@
+package mp.app.metrics;
+
+/**
+ * Timing statistics of a stage, exposed as composite data by {@link PipelineMetricsMXBean}
+ */
+public class StageStatistics {
+
+	final String name;
+
+	final long count;
+
+	final long totalNanos;
+
+	final long maxNanos;
+
+	StageStatistics(String name, long count, long totalNanos, long maxNanos) {
+		this.name = name;
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @return	stage name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return	number of executions
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return	total time in milliseconds
+	 */
+	public double getTotalMillis() {
+		return totalNanos / 1e6;
+	}
+
+	/**
+	 * @return	mean time in milliseconds
+	 */
+	public double getMeanMillis() {
+		return count > 0 ? totalNanos / 1e6 / count : 0;
+	}
+
+	/**
+	 * @return	maximum time in milliseconds
+	 */
+	public double getMaxMillis() {
+		return maxNanos / 1e6;
+	}
+}
@@ -2,12 +2,15 @@ package mp.app;
 
 import static mp.app.TestUtils.EPSILON;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -19,8 +22,11 @@ import java.util.stream.IntStream;
 
 import junit.framework.TestCase;
 import mp.app.marketdata.QuoteValue;
+import mp.app.marketdata.SharedSegment;
+import mp.app.marketdata.SnapshotFormat;
 import mp.app.measure.Measure;
 import mp.app.measure.PriceMeasure;
+import mp.app.metrics.PipelineMetrics;
 
 public class BasketPricerTest extends TestCase {
 
@@ -63,6 +69,148 @@ public class BasketPricerTest extends TestCase {
 		assertEquals(expected, totals, EPSILON);
 	}
 
+	public void testSimpleTotalsMapped() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+		Path basket = Paths.get(url.toURI());		
+		url = getClass().getClassLoader().getResource(TEST_FEED);
+		Path md = Paths.get(url.toURI());
+		
+		BasketPricer bp = new BasketPricer();
+		bp.mapped = true;
+		PrintStream out = new PrintStream(new OutputStream() {
+			public void write(int b) throws IOException {}
+		});
+		double totals = bp.valuate(basket, md, out);
+		
+		double expected = Arrays.asList(TEST_QTY_PRICE)
+			.stream()
+			.mapToDouble(d -> d[0] * d[1])
+			.sum();
+		
+		assertEquals(expected, totals, EPSILON);
+		
+		// second run reuses compiled basket
+		CompiledBasket cb = bp.compiled;
+		assertEquals(totals, bp.valuate(basket, md, out), EPSILON);
+		assertSame(cb, bp.compiled);
+	}
+
+	public void testSimpleTotalsStreaming() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+		Path basket = Paths.get(url.toURI());		
+		url = getClass().getClassLoader().getResource(TEST_FEED);
+		Path md = Paths.get(url.toURI());
+		
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		double totals = new BasketPricer().valuate(basket, md, new PrintStream(expected));
+		
+		BasketPricer bp = new BasketPricer();
+		bp.streaming = true;
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		assertEquals(totals, bp.valuate(basket, md, new PrintStream(report)));
+		// same report, except of valuation time
+		assertEquals(
+			expected.toString().substring(expected.toString().indexOf('\n')), 
+			report.toString().substring(report.toString().indexOf('\n')));
+		
+		bp.sorted = false;
+		assertEquals(totals, bp.valuate(basket, md, new PrintStream(report)), EPSILON);
+	}
+
+	public void testCache() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+		Path basket = Paths.get(url.toURI());		
+		url = getClass().getClassLoader().getResource(TEST_FEED);
+		Path md = Files.createTempFile("cache", ".feed");
+		Files.copy(Paths.get(url.toURI()), md, StandardCopyOption.REPLACE_EXISTING);
+		try {
+			BasketPricer bp = new BasketPricer();
+			bp.cache = new ValuationCache(4);
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			double totals = bp.valuate(basket, md, new PrintStream(expected));
+			assertEquals(1, bp.cache.size());
+			
+			ByteArrayOutputStream report = new ByteArrayOutputStream();
+			long hits = PipelineMetrics.get().getCacheHits();
+			assertEquals(totals, bp.valuate(basket, md, new PrintStream(report)));
+			assertEquals(hits + 1, PipelineMetrics.get().getCacheHits());
+			assertEquals(
+				expected.toString().substring(expected.toString().indexOf('\n')), 
+				report.toString().substring(report.toString().indexOf('\n')));
+			
+			// a changed feed is valuated again
+			Files.write(md, new String(Files.readAllBytes(md)).replace("3.5", "4.5").getBytes());
+			assertEquals(totals + 11.001, bp.valuate(basket, md, new PrintStream(report)), 1e-9);
+			assertEquals(hits + 1, PipelineMetrics.get().getCacheHits());
+			assertEquals(2, bp.cache.size());
+		} finally {
+			Files.delete(md);
+		}
+	}
+
+	public void testSimpleTotalsBinary() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+		Path basket = Paths.get(url.toURI());		
+		url = getClass().getClassLoader().getResource(TEST_FEED);
+		Path feed = Paths.get(url.toURI());
+		
+		Map<String, Double> quotes = Utils.getMarketDataWithLock(feed)
+			.getQuotes()
+			.stream()
+			.collect(Collectors.toMap(QuoteValue::getName, QuoteValue::getPrice));
+		Path snap = Files.createTempFile("test", "." + MarketDataFormat.BINARY.getSuffix());
+		try {
+			SnapshotFormat.write(snap, quotes);
+			
+			BasketPricer bp = new BasketPricer();
+			bp.format = MarketDataFormat.BINARY;
+			double totals = bp.valuate(basket, snap, new PrintStream(new OutputStream() {
+				public void write(int b) throws IOException {}
+			}));
+			
+			double expected = Arrays.asList(TEST_QTY_PRICE)
+				.stream()
+				.mapToDouble(d -> d[0] * d[1])
+				.sum();
+			
+			assertEquals(expected, totals, EPSILON);
+		} finally {
+			Files.delete(snap);
+		}
+	}
+
+	public void testSimpleTotalsShared() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+		Path basket = Paths.get(url.toURI());		
+		url = getClass().getClassLoader().getResource(TEST_FEED);
+		Path feed = Paths.get(url.toURI());
+		
+		Map<String, Double> quotes = Utils.getMarketDataWithLock(feed)
+			.getQuotes()
+			.stream()
+			.collect(Collectors.toMap(QuoteValue::getName, QuoteValue::getPrice));
+		Path shm = Files.createTempFile("test", "." + MarketDataFormat.SHARED.getSuffix());
+		try {
+			SharedSegment.create(shm, quotes.keySet().toArray(new String[quotes.size()]))
+				.publish(quotes);
+			
+			BasketPricer bp = new BasketPricer();
+			bp.format = MarketDataFormat.SHARED;
+			double totals = bp.valuate(basket, shm, new PrintStream(new OutputStream() {
+				public void write(int b) throws IOException {}
+			}));
+			
+			double expected = Arrays.asList(TEST_QTY_PRICE)
+				.stream()
+				.mapToDouble(d -> d[0] * d[1])
+				.sum();
+			
+			assertEquals(expected, totals, EPSILON);
+		} finally {
+			Files.delete(shm);
+		}
+	}
+
 	public void testEmptyBasket() {
 		Map<Asset, Double> result = new BasketPricer().valuate(
 			Collections.emptySet(), 
@@ -0,0 +1,151 @@
+package mp.app;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.QuoteValue;
+import mp.app.marketdata.SharedSegment;
+
+public class BatchValuationTest extends TestCase {
+
+	Path dir;
+
+	Path basket;
+
+	Path feed;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("batch");
+		basket = Paths.get(getClass().getClassLoader().getResource(BasketPricerTest.TEST_BASKET).toURI());
+		feed = Paths.get(getClass().getClassLoader().getResource(BasketPricerTest.TEST_FEED).toURI());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (Path p : Files.newDirectoryStream(dir)) {
+			Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	double expected() {
+		return Arrays.stream(BasketPricerTest.TEST_QTY_PRICE)
+			.mapToDouble(d -> d[0] * d[1])
+			.sum();
+	}
+
+	public void testManifest() throws Exception {
+		Files.copy(basket, dir.resolve("a.basket"));
+		Files.copy(basket, dir.resolve("b.basket"));
+		Files.copy(feed, dir.resolve("a.feed"));
+		Path manifest = dir.resolve("batch.txt");
+		Files.write(manifest, Arrays.asList(
+			"# basket feed [report]",
+			"a",
+			"b.basket a.feed",
+			"b.basket a.feed b2.out"));
+
+		List<BatchValuation.Item> items = BatchValuation.getItems(manifest.toString(), MarketDataFormat.TEXT);
+		assertEquals(3, items.size());
+		assertEquals(dir.resolve("a.report"), items.get(0).report);
+		assertEquals(dir.resolve("a.feed"), items.get(1).marketData);
+		assertEquals(dir.resolve("b2.out"), items.get(2).report);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		double[] totals = new BatchValuation(new BasketPricer()).valuate(items, new PrintStream(bytes, true));
+		for (double total : totals) {
+			assertEquals(expected(), total, EPSILON);
+		}
+		assertTrue(Files.size(dir.resolve("a.report")) > 0);
+		assertTrue(Files.size(dir.resolve("b.report")) > 0);
+		assertTrue(Files.size(dir.resolve("b2.out")) > 0);
+
+		String summary = bytes.toString();
+		assertTrue(summary, summary.contains("3 items, 1 market data files loaded"));
+		assertTrue(summary, summary.contains("TOTAL TIME"));
+	}
+
+	public void testGlob() throws Exception {
+		Files.copy(basket, dir.resolve("a.basket"));
+		Files.copy(basket, dir.resolve("b.basket"));
+		Files.copy(feed, dir.resolve("a.feed"));
+		Files.copy(feed, dir.resolve("b.feed"));
+
+		List<BatchValuation.Item> items = BatchValuation.getItems(dir.resolve("*.basket").toString(), MarketDataFormat.TEXT);
+		assertEquals(2, items.size());
+		assertEquals(dir.resolve("a.basket"), items.get(0).basket);
+		assertEquals(dir.resolve("b.feed"), items.get(1).marketData);
+		assertEquals(dir.resolve("b.report"), items.get(1).report);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		double[] totals = new BasketPricer().valuateBatch(dir.resolve("*.basket").toString(), new PrintStream(bytes, true));
+		assertEquals(2, totals.length);
+		assertEquals(expected(), totals[1], EPSILON);
+		assertTrue(bytes.toString(), bytes.toString().contains("2 items, 2 market data files loaded"));
+	}
+
+	public void testInterleavedFeeds() throws Exception {
+		Files.copy(feed, dir.resolve("a.feed"));
+		Files.copy(feed, dir.resolve("b.feed"));
+		List<BatchValuation.Item> items = Arrays.asList(
+			new BatchValuation.Item(basket, dir.resolve("a.feed"), dir.resolve("1.report")),
+			new BatchValuation.Item(basket, dir.resolve("b.feed"), dir.resolve("2.report")),
+			new BatchValuation.Item(basket, dir.resolve("x/../a.feed"), dir.resolve("3.report")));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		double[] totals = new BatchValuation(new BasketPricer()).valuate(items, new PrintStream(bytes, true));
+		assertEquals(3, totals.length);
+		for (double total : totals) {
+			assertEquals(expected(), total, EPSILON);
+		}
+
+		// each feed is loaded once, the summary keeps the batch order
+		String summary = bytes.toString();
+		assertTrue(summary, summary.contains("3 items, 2 market data files loaded"));
+		assertTrue(summary, summary.indexOf("1.report") < summary.indexOf("2.report"));
+		assertTrue(summary, summary.indexOf("2.report") < summary.indexOf("3.report"));
+	}
+
+	public void testMalformedManifest() throws Exception {
+		Path manifest = dir.resolve("batch.txt");
+		Files.write(manifest, Arrays.asList("a b c d"));
+		try {
+			BatchValuation.getItems(manifest.toString(), MarketDataFormat.TEXT);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSharedSegments() throws Exception {
+		Map<String, Double> quotes = Utils.getMarketDataWithLock(feed)
+			.getQuotes()
+			.stream()
+			.collect(Collectors.toMap(QuoteValue::getName, QuoteValue::getPrice));
+		String[] names = quotes.keySet().toArray(new String[quotes.size()]);
+		Files.copy(basket, dir.resolve("a.basket"));
+		Files.copy(basket, dir.resolve("b.basket"));
+		SharedSegment.create(dir.resolve("a." + MarketDataFormat.SHARED.getSuffix()), names).publish(quotes);
+		// prices of the second segment doubled
+		quotes.replaceAll((k, v) -> v * 2);
+		SharedSegment.create(dir.resolve("b." + MarketDataFormat.SHARED.getSuffix()), names).publish(quotes);
+
+		BasketPricer pricer = new BasketPricer();
+		pricer.format = MarketDataFormat.SHARED;
+		double[] totals = pricer.valuateBatch(dir.resolve("*.basket").toString(), new PrintStream(new ByteArrayOutputStream(), true));
+		assertEquals(2, totals.length);
+		assertEquals(expected(), totals[0], EPSILON);
+		assertEquals(2 * expected(), totals[1], EPSILON);
+	}
+}
@@ -0,0 +1,176 @@
+package mp.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mp.app.metrics.PipelineMetrics;
+
+public class ChangeDetectorTest extends TestCase {
+
+	Path dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("changes");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (Path p : Files.newDirectoryStream(dir)) {
+			Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	List<String> feed(String timestamp, String price) {
+		return Arrays.asList(
+			"# Market Data File",
+			"# Timestamp: " + timestamp,
+			"# Syntax: quote_name quote_value",
+			"FRUIT.BANA\t" + price);
+	}
+
+	/**
+	 * Writes the file with a modification time in the past, as if it was written long before stamping
+	 */
+	void write(Path path, List<String> lines, long ageMillis) throws Exception {
+		Files.write(path, lines);
+		Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+	}
+
+	public void testHashIgnoresTimestamp() throws Exception {
+		Path a = dir.resolve("a.feed");
+		Path b = dir.resolve("b.feed");
+		Path c = dir.resolve("c.feed");
+		Files.write(a, feed("2016-01-01T10:00:00", "1.5"));
+		Files.write(b, feed("2016-01-02T11:30:00.123", "1.5"));
+		Files.write(c, feed("2016-01-01T10:00:00", "1.6"));
+		assertEquals(ChangeDetector.hash(a), ChangeDetector.hash(b));
+		assertFalse(ChangeDetector.hash(a) == ChangeDetector.hash(c));
+
+		// partial prefixes are hashed as content
+		Files.write(a, Arrays.asList("# Time", "X"));
+		Files.write(b, Arrays.asList("# Time", "Y"));
+		assertFalse(ChangeDetector.hash(a) == ChangeDetector.hash(b));
+		Files.write(c, Arrays.asList("# Time", "X"));
+		assertEquals(ChangeDetector.hash(a), ChangeDetector.hash(c));
+	}
+
+	public void testHashAcrossBuffers() throws Exception {
+		List<String> lines = new ArrayList<>();
+		// header spanning the boundary of the 64k read buffer
+		lines.add(String.join("", Collections.nCopies((1 << 16) - 5, "x")));
+		lines.add("# Timestamp: 1");
+		lines.add("# Times");
+		lines.add("end");
+		Path a = dir.resolve("a.feed");
+		Files.write(a, lines);
+		lines.set(1, "# Timestamp: 2016-01-01T10:00:00");
+		Path b = dir.resolve("b.feed");
+		Files.write(b, lines);
+		assertEquals(ChangeDetector.hash(a), ChangeDetector.hash(b));
+
+		lines.set(2, "# Timez");
+		Files.write(b, lines);
+		assertFalse(ChangeDetector.hash(a) == ChangeDetector.hash(b));
+	}
+
+	public void testIsChanged() throws Exception {
+		ChangeDetector changes = new ChangeDetector();
+		Path path = dir.resolve("test.feed");
+		write(path, feed("2016-01-01T10:00:00", "1.5"), 60_000);
+		assertTrue(changes.isChanged(path));
+		assertFalse(changes.isChanged(path));
+
+		// rewritten, same prices
+		write(path, feed("2016-01-01T10:05:00", "1.5"), 30_000);
+		assertFalse(changes.isChanged(path));
+
+		write(path, feed("2016-01-01T10:05:00", "1.7"), 10_000);
+		assertTrue(changes.isChanged(path));
+		assertFalse(changes.isChanged(path));
+
+		Files.delete(path);
+		assertTrue(changes.isChanged(path));
+	}
+
+	public void testRacyStamp() throws Exception {
+		ChangeDetector changes = new ChangeDetector();
+		Path path = dir.resolve("test.feed");
+		Files.write(path, feed("2016-01-01T10:00:00", "1.5"));
+		FileTime modified = Files.getLastModifiedTime(path);
+		assertTrue(changes.isChanged(path));
+
+		// same size and modification time, different content
+		Files.write(path, feed("2016-01-01T10:00:00", "1.6"));
+		Files.setLastModifiedTime(path, modified);
+		assertTrue(changes.isChanged(path));
+	}
+
+	public void testSkippedReloads() throws Exception {
+		Path basket = dir.resolve("test.basket");
+		Path feed = dir.resolve("test.feed");
+		Files.copy(Paths.get(getClass().getClassLoader().getResource(BasketPricerTest.TEST_BASKET).toURI()), basket);
+		write(feed, feed("2016-01-01T10:00:00", "1.5"), 60_000);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes, true);
+		PipelineMetrics metrics = PipelineMetrics.get();
+		BasketPricer pricer = new BasketPricer();
+		try (ValuationScheduler scheduler = pricer.newScheduler(basket, feed, out)) {
+			long skipped = metrics.getSkippedReloads();
+			long valuations = metrics.getValuations();
+
+			write(feed, feed("2016-01-01T10:05:00", "1.5"), 30_000);
+			scheduler.request(false, true);
+			assertTrue(scheduler.awaitIdle(5_000));
+			assertEquals(skipped + 1, metrics.getSkippedReloads());
+			assertEquals(valuations, metrics.getValuations());
+			assertEquals(0, bytes.size());
+
+			write(feed, feed("2016-01-01T10:10:00", "1.7"), 10_000);
+			scheduler.request(false, true);
+			assertTrue(scheduler.awaitIdle(5_000));
+			assertEquals(skipped + 1, metrics.getSkippedReloads());
+			assertEquals(valuations + 1, metrics.getValuations());
+			assertTrue(bytes.size() > 0);
+		}
+	}
+	public void testIncrementalSeed() throws Exception {
+		Path basket = dir.resolve("test.basket");
+		Path feed = dir.resolve("test.feed");
+		Files.copy(Paths.get(getClass().getClassLoader().getResource(BasketPricerTest.TEST_BASKET).toURI()), basket);
+		write(feed, feed("2016-01-01T10:00:00", "1.5"), 60_000);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes, true);
+		PipelineMetrics metrics = PipelineMetrics.get();
+		BasketPricer pricer = new BasketPricer();
+		pricer.incremental = true;
+		pricer.valuate(basket, feed, out);
+		assertNotNull(pricer.seedMarketData);
+
+		// files of the initial valuation are not parsed again
+		long parsed = metrics.getParsedLines();
+		try (ValuationScheduler scheduler = pricer.newScheduler(basket, feed, out)) {
+			assertEquals(parsed, metrics.getParsedLines());
+			assertNull(pricer.seedBasket);
+			assertNull(pricer.seedMarketData);
+
+			bytes.reset();
+			write(feed, feed("2016-01-01T10:10:00", "1.7"), 10_000);
+			scheduler.request(false, true);
+			assertTrue(scheduler.awaitIdle(5_000));
+			assertTrue(bytes.toString().contains("Repriced assets:        1"));
+		}
+	}
+}
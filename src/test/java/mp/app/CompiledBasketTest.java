@@ -0,0 +1,78 @@
+package mp.app;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.measure.Measure;
+import mp.app.measure.PriceMeasure;
+
+public class CompiledBasketTest extends TestCase {
+
+	static final Measure MEASURE = new PriceMeasure();
+
+	CompiledBasket basket = new CompiledBasket(Arrays.asList(
+		new Asset("Oranges", "FRUIT.ORAN", 2),
+		new Asset("Bananas", "FRUIT.BANA", 10),
+		new Asset("Unknown", "FRUIT.UNKN", 1)));
+
+	ArrayMarketData md(double bana, double oran) {
+		return new ArrayMarketData.Builder()
+			.add("FRUIT.BANA", bana)
+			.add("FRUIT.ORAN", oran)
+			.build();
+	}
+
+	public void testValuation() {
+		double[] values = basket.valuate(md(1.5, 3), MEASURE);
+		assertEquals("Bananas", basket.getAsset(0).getName());
+		assertEquals(15, values[0], EPSILON);
+		assertEquals(6, values[1], EPSILON);
+		assertTrue(Double.isNaN(values[2]));
+	}
+
+	public void testBindingReusedForSameLayout() {
+		ArrayMarketData md = md(1, 2);
+		basket.valuate(md, MEASURE);
+		int[] slots = basket.slots;
+
+		// equal layout, different instance
+		double[] values = basket.valuate(md(2, 4), MEASURE);
+		assertSame(slots, basket.slots);
+		assertEquals(20, values[0], EPSILON);
+		assertEquals(8, values[1], EPSILON);
+
+		// reused layout instance
+		ArrayMarketData next = new ArrayMarketData.Builder(md.getSymbolIndex())
+			.add("FRUIT.BANA", 3)
+			.add("FRUIT.ORAN", 5)
+			.build();
+		assertSame(md.getSymbolIndex(), next.getSymbolIndex());
+		basket.valuate(next, MEASURE);
+		assertSame(slots, basket.slots);
+	}
+
+	public void testRebindOnLayoutChange() {
+		basket.valuate(md(1, 2), MEASURE);
+		ArrayMarketData md = new ArrayMarketData.Builder()
+			.add("FRUIT.UNKN", 7)
+			.add("FRUIT.ORAN", 2)
+			.build();
+		double[] values = basket.valuate(md, MEASURE);
+		assertTrue(Double.isNaN(values[0]));
+		assertEquals(4, values[1], EPSILON);
+		assertEquals(7, values[2], EPSILON);
+	}
+
+	public void testBatchDefaultFallsBackToPerAsset() {
+		Measure perAsset = (a, md) -> a.getQuantity() * md.getPrice(a.getQuoteName());
+		double[] expected = basket.valuate(md(1.5, 3), MEASURE);
+		double[] values = basket.valuate(md(1.5, 3), perAsset);
+		assertEquals(expected.length, values.length);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(Double.valueOf(expected[i]), Double.valueOf(values[i]));
+		}
+	}
+}
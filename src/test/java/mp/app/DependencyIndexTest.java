@@ -0,0 +1,125 @@
+package mp.app;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import mp.app.DependencyIndex.Position;
+import mp.app.marketdata.QuoteValue;
+import mp.app.measure.PriceMeasure;
+
+public class DependencyIndexTest extends TestCase {
+
+	Asset bana = new Asset("Bananas", "FRUIT.BANA", 10);
+
+	Asset oran = new Asset("Oranges", "FRUIT.ORAN", 2);
+
+	Asset aapl = new Asset("Apples", "FRUIT.AAPL", 3);
+
+	Asset oran2 = new Asset("Oranges", "FRUIT.ORAN", 5);
+
+	Set<Asset> fruits = new HashSet<>(Arrays.asList(bana, oran, aapl));
+
+	Set<Asset> citrus = new HashSet<>(Arrays.asList(oran2));
+
+	List<QuoteValue> quotes(double bana, double oran, double aapl) {
+		return Arrays.asList(
+			new QuoteValue("FRUIT.BANA", bana),
+			new QuoteValue("FRUIT.ORAN", oran),
+			new QuoteValue("FRUIT.AAPL", aapl));
+	}
+
+	DependencyIndex<String> index() {
+		DependencyIndex<String> index = new DependencyIndex<>(new PriceMeasure());
+		index.put("fruits", fruits, TestUtils.of(quotes(1, 2, 3)));
+		index.put("citrus", citrus, TestUtils.of(quotes(1, 2, 3)));
+		return index;
+	}
+
+	public void testTickRepricesFanOutOnly() {
+		DependencyIndex<String> index = index();
+		assertEquals(3, index.size());
+		assertEquals(2, index.getPositions("FRUIT.ORAN").size());
+		assertEquals(10 + 4 + 9, index.getTotal("fruits"), EPSILON);
+		assertEquals(10, index.getTotal("citrus"), EPSILON);
+
+		List<Position<String>> changed = index.tick(
+			Collections.singleton("FRUIT.ORAN"), TestUtils.of(quotes(1, 3, 3)));
+		assertEquals(2, changed.size());
+		assertEquals(10 + 6 + 9, index.getTotal("fruits"), EPSILON);
+		assertEquals(15, index.getTotal("citrus"), EPSILON);
+
+		Map<String, Double> totals = index.getTotals(changed);
+		assertEquals(2, totals.size());
+		assertEquals(15, totals.get("citrus"), EPSILON);
+
+		changed = index.tick(Collections.singleton("FRUIT.BANA"), TestUtils.of(quotes(2, 3, 3)));
+		assertEquals(1, changed.size());
+		assertSame(bana, changed.get(0).getAsset());
+		assertEquals(20, changed.get(0).getValue(), EPSILON);
+		assertEquals(20 + 6 + 9, index.getTotal("fruits"), EPSILON);
+		assertEquals(15, index.getTotal("citrus"), EPSILON);
+
+		assertTrue(index.tick(Collections.singleton("NONEXISTENT"), TestUtils.of(quotes(2, 3, 3))).isEmpty());
+	}
+
+	public void testUpdateDiffsSnapshots() {
+		DependencyIndex<String> index = index();
+		List<Position<String>> changed = index.update(TestUtils.of(quotes(1, 2, Double.NaN)));
+		assertEquals(1, changed.size());
+		assertTrue(Double.isNaN(index.getTotal("fruits")));
+		assertEquals(10, index.getTotal("citrus"), EPSILON);
+
+		changed = index.update(TestUtils.of(quotes(1, 2, 3)));
+		assertEquals(1, changed.size());
+		assertEquals(10 + 4 + 9, index.getTotal("fruits"), EPSILON);
+
+		assertTrue(index.update(TestUtils.of(quotes(1, 2, 3))).isEmpty());
+	}
+
+	public void testBasketChanges() {
+		DependencyIndex<String> index = index();
+
+		// basket file changed, oranges sold
+		index.put("fruits", new HashSet<>(Arrays.asList(bana, aapl)), TestUtils.of(quotes(1, 2, 3)));
+		assertEquals(10 + 9, index.getTotal("fruits"), EPSILON);
+		assertEquals(1, index.getPositions("FRUIT.ORAN").size());
+		assertEquals(2, index.getBasket("fruits").size());
+
+		assertTrue(index.remove("citrus"));
+		assertFalse(index.remove("citrus"));
+		assertTrue(index.getPositions("FRUIT.ORAN").isEmpty());
+		assertEquals(2, index.size());
+		assertTrue(Double.isNaN(index.getTotal("citrus")));
+		assertEquals(Collections.singleton("fruits"), index.getBaskets());
+
+		assertTrue(index.tick(Collections.singleton("FRUIT.ORAN"), TestUtils.of(quotes(1, 3, 3))).isEmpty());
+	}
+
+	public void testRemoveFromSharedQuote() {
+		DependencyIndex<String> index = new DependencyIndex<>(new PriceMeasure());
+		for (int i = 0; i < 5; i++) {
+			index.put("basket" + i, citrus, TestUtils.of(quotes(1, 2, 3)));
+		}
+		assertTrue(index.remove("basket1"));
+		assertTrue(index.remove("basket4"));
+		assertTrue(index.remove("basket0"));
+		List<Position<String>> positions = index.getPositions("FRUIT.ORAN");
+		assertEquals(2, positions.size());
+		for (int i = 0; i < positions.size(); i++) {
+			assertEquals(i, positions.get(i).index);
+		}
+
+		List<Position<String>> changed = index.tick(
+			Collections.singleton("FRUIT.ORAN"), TestUtils.of(quotes(1, 3, 3)));
+		assertEquals(2, changed.size());
+		assertEquals(15, index.getTotal("basket2"), EPSILON);
+		assertEquals(15, index.getTotal("basket3"), EPSILON);
+	}
+}
@@ -0,0 +1,145 @@
+package mp.app;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.MarketData;
+import mp.app.measure.Measure;
+
+public class ExecutionPlannerTest extends TestCase {
+
+	static final MarketData EMPTY = TestUtils.of(Collections.emptyList());
+
+	static Asset[] assets(int n) {
+		return IntStream.range(0, n)
+			.mapToObj(i -> new Asset("Asset " + i, "ASSET." + i, i))
+			.toArray(Asset[]::new);
+	}
+
+	public void testPlan() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ForkJoinPool single = new ForkJoinPool(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ExecutionPlanner planner = new ExecutionPlanner(pool);
+			planner.thresholdNanos = 1_000_000;
+			assertEquals(ExecutionPlanner.Plan.SEQUENTIAL, planner.plan(10, 1_000));
+			assertEquals(ExecutionPlanner.Plan.FORK_JOIN, planner.plan(10_000, 1_000));
+			assertEquals(ExecutionPlanner.Plan.SEQUENTIAL, planner.plan(1, 10_000_000));
+
+			planner = new ExecutionPlanner(executor, 2);
+			planner.thresholdNanos = 1_000_000;
+			assertEquals(ExecutionPlanner.Plan.EXECUTOR, planner.plan(10_000, 1_000));
+
+			planner = new ExecutionPlanner(single);
+			assertEquals(ExecutionPlanner.Plan.SEQUENTIAL, planner.plan(10_000, 1_000_000));
+		} finally {
+			pool.shutdown();
+			single.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	public void testCalibration() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			ExecutionPlanner planner = new ExecutionPlanner(pool);
+			assertTrue(planner.getThresholdNanos() >= ExecutionPlanner.MIN_THRESHOLD_NANOS);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testChunks() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			ExecutionPlanner planner = new ExecutionPlanner(pool);
+			int[] bounds = planner.chunks(3, 103);
+			assertEquals(9, bounds.length);
+			assertEquals(3, bounds[0]);
+			assertEquals(103, bounds[8]);
+			assertEquals(2, planner.chunks(3, 4).length);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testSequential() {
+		Measure m = (a, md) -> a.getQuantity() * 2;
+		ExecutionPlanner planner = new ExecutionPlanner();
+		double[] values = planner.valuate(assets(20), EMPTY, m);
+		assertEquals(ExecutionPlanner.Plan.SEQUENTIAL, planner.getLastPlan());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(i * 2.0, values[i]);
+		}
+		assertEquals(0, planner.valuate(assets(0), EMPTY, m).length);
+	}
+
+	public void testDedicatedPool() {
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		Measure m = (a, md) -> {
+			try { Thread.sleep(2); } catch (Exception e) {}
+			threads.add(Thread.currentThread().getName());
+			return a.getQuantity() * 2;
+		};
+
+		ForkJoinPool pool = new ForkJoinPool(4, p -> {
+			ForkJoinPool.ForkJoinWorkerThreadFactory f = ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+			ForkJoinWorkerThread t = f.newThread(p);
+			t.setName("pricing-" + t.getPoolIndex());
+			return t;
+		}, null, false);
+		try {
+			ExecutionPlanner planner = new ExecutionPlanner(pool);
+			double[] values = planner.valuate(assets(200), EMPTY, m);
+			assertEquals(ExecutionPlanner.Plan.FORK_JOIN, planner.getLastPlan());
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(i * 2.0, values[i]);
+			}
+			// sampled by the caller, the rest by the pool
+			threads.remove(Thread.currentThread().getName());
+			assertFalse(threads.isEmpty());
+			assertTrue(threads.stream().allMatch(t -> t.startsWith("pricing-")));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testExecutor() {
+		Measure m = (a, md) -> {
+			try { Thread.sleep(2); } catch (Exception e) {}
+			return a.getQuantity() * 2;
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			ExecutionPlanner planner = new ExecutionPlanner(executor, 3);
+			double[] values = planner.valuate(assets(100), EMPTY, m);
+			assertEquals(ExecutionPlanner.Plan.EXECUTOR, planner.getLastPlan());
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(i * 2.0, values[i]);
+			}
+
+			try {
+				planner.valuate(assets(100), EMPTY, (a, md) -> {
+					try { Thread.sleep(2); } catch (Exception e) {}
+					if (a.getQuantity() == 50) {
+						throw new IllegalArgumentException("failed");
+					}
+					return 1;
+				});
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals("failed", e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package mp.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+
+public class FetchPipelineTest extends TestCase {
+
+	static Set<String> names(int n) {
+		return IntStream.range(0, n)
+			.mapToObj(i -> String.format("Q%03d", i))
+			.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	static Map<String, Double> prices(Set<String> names) {
+		Map<String, Double> map = new HashMap<>();
+		for (String name : names) {
+			map.put(name, Double.valueOf(name.substring(1)));
+		}
+		return map;
+	}
+
+	public void testSplit() {
+		try (FetchPipeline pipeline = new FetchPipeline(FetchPipelineTest::prices, 4, 1000, 0, 2)) {
+			List<Set<String>> batches = pipeline.split(names(10));
+			assertEquals(3, batches.size());
+			assertEquals("[Q000, Q001, Q002, Q003]", batches.get(0).toString());
+			assertEquals("[Q008, Q009]", batches.get(2).toString());
+			assertTrue(pipeline.split(Collections.emptySet()).isEmpty());
+		}
+	}
+
+	public void testConcurrentBatches() throws Exception {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		FetchPipeline.BatchFetcher fetcher = names -> {
+			int n = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(n, Math::max);
+			Thread.sleep(20);
+			inFlight.decrementAndGet();
+			return prices(names);
+		};
+
+		try (FetchPipeline pipeline = new FetchPipeline(fetcher, 3, 1000, 0, 4)) {
+			List<Map<String, Double>> batches = new ArrayList<>();
+			Map<String, Double> result = pipeline.fetch(names(40), batches::add);
+			assertEquals(prices(names(40)), result);
+			assertEquals(14, batches.size());
+			assertTrue(maxInFlight.get() > 1);
+			assertTrue(maxInFlight.get() <= 4);
+		}
+	}
+
+	public void testProgressive() throws Exception {
+		// the first batch is the slowest, the others are reported before it
+		FetchPipeline.BatchFetcher fetcher = names -> {
+			Thread.sleep(names.contains("Q000") ? 300 : 10);
+			return prices(names);
+		};
+		try (FetchPipeline pipeline = new FetchPipeline(fetcher, 2, 5000, 0, 4)) {
+			List<Set<String>> batches = new ArrayList<>();
+			pipeline.fetch(names(8), batch -> batches.add(new TreeSet<>(batch.keySet())));
+			assertEquals(4, batches.size());
+			assertEquals("[Q000, Q001]", batches.get(3).toString());
+		}
+	}
+
+	public void testRetries() throws Exception {
+		Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+		FetchPipeline.BatchFetcher fetcher = names -> {
+			String first = names.iterator().next();
+			int attempt = attempts.computeIfAbsent(first, k -> new AtomicInteger()).incrementAndGet();
+			if (first.equals("Q000") && attempt == 1) {
+				throw new IllegalStateException("failed");
+			}
+			if (first.equals("Q002") && attempt == 1) {
+				// times out
+				Thread.sleep(10_000);
+			}
+			if (first.equals("Q004")) {
+				throw new IllegalStateException("failed always");
+			}
+			return prices(names);
+		};
+		try (FetchPipeline pipeline = new FetchPipeline(fetcher, 2, 200, 1, 4)) {
+			Map<String, Double> result = pipeline.fetch(names(6), batch -> {});
+			assertEquals(4, result.size());
+			assertEquals(0.0, result.get("Q000"));
+			assertEquals(3.0, result.get("Q003"));
+			// quotes of failed batches are left out
+			assertFalse(result.containsKey("Q004"));
+			assertFalse(result.containsKey("Q005"));
+			assertEquals(2, attempts.get("Q000").get());
+			assertEquals(2, attempts.get("Q002").get());
+			assertEquals(2, attempts.get("Q004").get());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package mp.app;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.QuoteValue;
+import mp.app.measure.PriceMeasure;
+
+public class IncrementalValuationTest extends TestCase {
+
+	Asset bana = new Asset("Bananas", "FRUIT.BANA", 10);
+
+	Asset oran = new Asset("Oranges", "FRUIT.ORAN", 2);
+
+	Asset aapl = new Asset("Apples", "FRUIT.AAPL", 3);
+
+	Set<Asset> basket = new HashSet<>(Arrays.asList(bana, oran, aapl));
+
+	List<QuoteValue> quotes(double bana, double oran, double aapl) {
+		return Arrays.asList(
+			new QuoteValue("FRUIT.BANA", bana),
+			new QuoteValue("FRUIT.ORAN", oran),
+			new QuoteValue("FRUIT.AAPL", aapl));
+	}
+
+	public void testOnlyChangedAssetsRepriced() {
+		IncrementalValuation iv = new IncrementalValuation(new PriceMeasure());
+		Collection<Asset> all = iv.reset(basket, TestUtils.of(quotes(1, 2, 3)));
+		assertEquals(3, all.size());
+		assertEquals(10 + 4 + 9, iv.getTotal(), EPSILON);
+
+		Collection<Asset> changed = iv.update(TestUtils.of(quotes(1, 5, 3)));
+		assertEquals(Arrays.asList(oran), changed);
+		assertEquals(10 + 10 + 9, iv.getTotal(), EPSILON);
+		assertEquals(10d, iv.getResults().get(oran), EPSILON);
+
+		changed = iv.update(TestUtils.of(quotes(1, 5, 3)));
+		assertTrue(changed.isEmpty());
+	}
+
+	public void testTotalsConsistentWithFullValuation() {
+		IncrementalValuation iv = new IncrementalValuation(new PriceMeasure());
+		iv.reset(basket, TestUtils.of(quotes(1, 2, 3)));
+		iv.update(TestUtils.of(quotes(Double.NaN, 2, 3)));
+		assertTrue(Double.isNaN(iv.getTotal()));
+
+		iv.update(TestUtils.of(quotes(1.1, 2.2, 3.3)));
+		Map<Asset, Double> full = new BasketPricer().valuate(
+			basket, TestUtils.of(quotes(1.1, 2.2, 3.3)), new PriceMeasure());
+		double expected = full.values().stream().mapToDouble(Double::doubleValue).sum();
+		assertEquals(expected, iv.getTotal(), EPSILON * 100);
+	}
+
+	public void testRemovedQuote() {
+		IncrementalValuation iv = new IncrementalValuation(new PriceMeasure());
+		iv.reset(basket, TestUtils.of(quotes(1, 2, 3)));
+		Collection<Asset> changed = iv.update(TestUtils.of(Arrays.asList(
+			new QuoteValue("FRUIT.BANA", 1),
+			new QuoteValue("FRUIT.ORAN", 2))));
+		assertEquals(Arrays.asList(aapl), changed);
+		assertTrue(Double.isNaN(iv.getTotal()));
+	}
+
+	ArrayMarketData snapshot(double bana, double oran, double aapl) {
+		ArrayMarketData.Builder builder = new ArrayMarketData.Builder();
+		quotes(bana, oran, aapl).forEach(qv -> builder.add(qv.getName(), qv.getPrice()));
+		// quotes not referenced by the basket
+		return builder.add("FRUIT.KIWI", 7).build();
+	}
+
+	public void testColumnDiffOfEqualLayouts() {
+		IncrementalValuation iv = new IncrementalValuation(new PriceMeasure());
+		iv.reset(basket, snapshot(1, 2, 3));
+
+		Collection<Asset> changed = iv.update(snapshot(1, 5, 3));
+		assertNotNull(iv.slots);
+		assertEquals(Arrays.asList(oran), changed);
+		assertEquals(10 + 10 + 9, iv.getTotal(), EPSILON);
+
+		changed = iv.update(snapshot(Double.NaN, 5, 3));
+		assertEquals(Arrays.asList(bana), changed);
+		assertTrue(Double.isNaN(iv.getTotal()));
+
+		// other layout, compared by names
+		changed = iv.update(TestUtils.of(quotes(1, 5, 4)));
+		assertEquals(2, changed.size());
+		assertEquals(10 + 10 + 12, iv.getTotal(), EPSILON);
+	}
+}
@@ -0,0 +1,137 @@
+package mp.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.MarketData;
+import mp.app.marketdata.QuoteValue;
+import mp.app.metrics.PipelineMetrics;
+
+public class ParallelLoaderTest extends TestCase {
+
+	public void testSplit() throws Exception {
+		Path path = Files.createTempFile("parallel", ".feed");
+		try {
+			Files.write(path, "a 1\nbb 2\r\nccc 3\n\nd 4".getBytes());
+			try (FileChannel channel = FileChannel.open(path)) {
+				long[] bounds = ParallelLoader.split(channel, 3);
+				assertEquals("[0, 4, 9, 16, 20]", Arrays.toString(bounds));
+				assertEquals("[0, 20]", Arrays.toString(ParallelLoader.split(channel, 100)));
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testBasketLoad() throws Exception {
+		StringBuilder sb = new StringBuilder("# basket\n");
+		for (int i = 0; i < 1000; i++) {
+			sb.append("FRUIT.Q").append(i).append(' ').append(i).append(" asset").append(i)
+				.append(i % 3 == 0 ? "\r\n" : "\n");
+			if (i % 100 == 0) {
+				sb.append("  broken").append(i).append("\n\n");
+			}
+		}
+
+		Path path = Files.createTempFile("parallel", ".basket");
+		try {
+			Files.write(path, sb.toString().getBytes());
+			String[] errors = new String[2];
+			Set<Asset> expected = captureErrors(() -> Utils.getBasket(path), errors, 0);
+			for (long chunkSize : new long[] { 1, 7, 64, 4096, 1 << 20 }) {
+				Set<Asset> basket = captureErrors(() -> ParallelLoader.getBasket(path, chunkSize), errors, 1);
+				assertEquals(toString(expected, Asset::getQuoteName), toString(basket, Asset::getQuoteName));
+				assertEquals(toString(expected, a -> a.getQuantity() + a.getName()), toString(basket, a -> a.getQuantity() + a.getName()));
+				assertEquals(errors[0], errors[1]);
+			}
+			assertEquals(1000, expected.size());
+			assertEquals(10, errors[0].split("\n").length);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testMarketDataLoad() throws Exception {
+		StringBuilder sb = new StringBuilder("# feed\n");
+		for (int i = 0; i < 1000; i++) {
+			sb.append("FRUIT.Q").append(i).append(' ').append(i % 7 == 0 ? "x" : i + ".25")
+				.append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+
+		Path path = Files.createTempFile("parallel", ".feed");
+		try {
+			Files.write(path, sb.toString().getBytes());
+			String[] errors = new String[2];
+			MarketData expected = captureErrors(() -> Utils.getMarketDataWithLock(path), errors, 0);
+			for (long chunkSize : new long[] { 1, 7, 64, 4096, 1 << 20 }) {
+				ArrayMarketData md = captureErrors(() -> ParallelLoader.getMarketData(path, null, true, chunkSize), errors, 1);
+				assertEquals(expected.getQuotes().size(), md.size());
+				for (QuoteValue qv : expected.getQuotes()) {
+					assertEquals(Double.valueOf(qv.getPrice()), Double.valueOf(md.getPrice(qv.getName())));
+				}
+				assertEquals(errors[0], errors[1]);
+			}
+			assertEquals(143, errors[1].split("\n").length);
+			assertTrue(errors[1].indexOf("FRUIT.Q7 x") < errors[1].indexOf("FRUIT.Q994 x"));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testMissingFile() throws Exception {
+		Path path = Files.createTempFile("parallel", ".feed");
+		Files.delete(path);
+		String[] errors = new String[1];
+		assertTrue(captureErrors(() -> ParallelLoader.getBasket(path), errors, 0).isEmpty());
+		assertEquals(0, captureErrors(() -> ParallelLoader.getMarketData(path, null, false), errors, 0).size());
+	}
+
+	static <T> T captureErrors(Supplier<T> loader, String[] errors, int i) {
+		PrintStream err = System.err;
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(bos, true));
+		try {
+			return loader.get();
+		} finally {
+			System.setErr(err);
+			errors[i] = bos.toString();
+		}
+	}
+
+	static <T> String toString(Set<T> set, Function<T, String> key) {
+		return set.stream().map(key).sorted().collect(Collectors.joining(","));
+	}
+
+	public void testLineCounts() throws Exception {
+		Path path = Files.createTempFile("parallel", ".feed");
+		try {
+			Files.write(path, "# feed\nFRUIT.BANA 1.5\nFRUIT.ORAN x\nFRUIT.AAPL NaN\n".getBytes());
+			PipelineMetrics metrics = PipelineMetrics.get();
+			List<Supplier<MarketData>> loaders = Arrays.asList(
+				() -> Utils.getMarketData(path),
+				() -> Utils.getMarketDataMapped(path, null),
+				() -> ParallelLoader.getMarketData(path, null, false, 8));
+			for (Supplier<MarketData> loader : loaders) {
+				long parsed = metrics.getParsedLines();
+				long rejected = metrics.getRejectedLines();
+				assertEquals(3, loader.get().getQuotes().size());
+				// each line is counted once, a NaN price is parsed, an invalid one rejected
+				assertEquals(parsed + 2, metrics.getParsedLines());
+				assertEquals(rejected + 1, metrics.getRejectedLines());
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
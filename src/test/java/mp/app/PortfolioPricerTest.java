@@ -0,0 +1,57 @@
+package mp.app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class PortfolioPricerTest extends TestCase {
+
+	static final String TEST_FEED = "test.feed";
+
+	static final String TEST_BASKET = "test.basket";
+
+	static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+		public void write(int b) throws IOException {}
+	});
+
+	Path resource(String name) throws Exception {
+		URL url = getClass().getClassLoader().getResource(name);
+		return Paths.get(url.toURI());
+	}
+
+	public void testSharedMarketData() throws Exception {
+		Path basket = resource(TEST_BASKET);
+		Path md = resource(TEST_FEED);
+		double single = new BasketPricer().valuate(basket, md, NULL_STREAM);
+
+		List<Path> baskets = Arrays.asList(basket, basket, basket);
+		PortfolioPricer pp = new PortfolioPricer();
+		double totals = pp.valuate(baskets, md, NULL_STREAM);
+		assertEquals(3 * single, totals, 1e-9);
+
+		pp.pricer.mapped = true;
+		assertEquals(totals, pp.valuate(baskets, md, NULL_STREAM), 1e-9);
+
+		// baskets are loaded by the pricer's loader
+		pp.pricer.parallel = true;
+		assertEquals(totals, pp.valuate(baskets, md, NULL_STREAM), 1e-9);
+	}
+
+	public void testPerBasketTotals() throws Exception {
+		Path basket = resource(TEST_BASKET);
+		double[] totals = new PortfolioPricer().valuate(
+			Arrays.asList(basket, Paths.get("nonexistent.basket")),
+			Utils.getMarketDataWithLock(resource(TEST_FEED)));
+		assertEquals(2, totals.length);
+		assertTrue(totals[0] > 0);
+		// failed to load, not an empty basket
+		assertTrue(Double.isNaN(totals[1]));
+	}
+}
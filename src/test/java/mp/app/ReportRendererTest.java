@@ -0,0 +1,90 @@
+package mp.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ReportRendererTest extends TestCase {
+
+	static final double[] EDGE_CASES = {
+		0.0, -0.0, 0.001, -0.001, 0.004999, -0.005, 0.005, 0.015, 0.025, 0.125, 0.375, 1.005, 2.675,
+		0.000005, 0.000015, 0.000025, 1e-7, -1e-7, 999.995, 999999.995, 1234567.891,
+		1e12, 9.99999999999995e12, 1e13, 1e15, 1e16, 1e20, -1e20, 1e300,
+		Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE, -Double.MAX_VALUE,
+		Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+		9007199254740993.0, 4503599627370495.5, 0.5, 1.5, 2.5, -2.5
+	};
+
+	/**
+	 * Random samples per format, exhaustive runs set e.g. <code>-Dmp.app.test.samples=1000000</code>
+	 */
+	static final int SAMPLES = Integer.getInteger("mp.app.test.samples", 2_000);
+
+	public ReportRendererTest(String testName) {
+		super(testName);
+	}
+
+	void assertSameAsFormat(ReportRenderer r, DecimalFormat format, double v) {
+		r.clear();
+		assertEquals("value " + v, format.format(v), r.number(v).toString());
+	}
+
+	void assertSameAsFormat(DecimalFormat format) {
+		// one renderer per format, its construction analyses the format
+		ReportRenderer r = new ReportRenderer(null, format);
+		for (double v : EDGE_CASES) {
+			assertSameAsFormat(r, format, v);
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLES; i++) {
+			// random values at different magnitudes, random bit patterns and ties
+			assertSameAsFormat(r, format, (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 6));
+			assertSameAsFormat(r, format, Double.longBitsToDouble(random.nextLong()));
+			assertSameAsFormat(r, format, (random.nextInt(2_000_000) - 1_000_000) / 8.0 / Math.pow(10, random.nextInt(6)));
+		}
+	}
+
+	public void testReportFormat() {
+		assertSameAsFormat(BasketPricer.REPORT_NUMBERS_FORMAT);
+	}
+
+	public void testFeedFormat() {
+		assertSameAsFormat(Utils.FORMAT);
+	}
+
+	public void testOtherFormats() {
+		assertSameAsFormat(new DecimalFormat("0"));
+		assertSameAsFormat(new DecimalFormat("#,##0.###"));
+		assertSameAsFormat(new DecimalFormat("000.0#"));
+		assertSameAsFormat(new DecimalFormat("#,##,##0.00;(#)"));
+		assertSameAsFormat(new DecimalFormat("0.00E0"));
+		assertSameAsFormat(new DecimalFormat("#.##%"));
+	}
+
+	public void testLines() {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		PrintStream eout = new PrintStream(expected);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		ReportRenderer r = new ReportRenderer(new PrintStream(actual), BasketPricer.REPORT_NUMBERS_FORMAT);
+
+		Random random = new Random(7);
+		for (int i = 0; i < 5 * SAMPLES; i++) {
+			String name = "SYM." + random.nextInt(1 << (i % 30 + 1));
+			double v = (random.nextDouble() - 0.4) * Math.pow(10, random.nextInt(16));
+			eout.println(String.format("%-9s %15s", name, BasketPricer.REPORT_NUMBERS_FORMAT.format(v)));
+			r.left(name, 9).append(' ').right(v, 15).newLine();
+			if (i % 1000 == 0) {
+				eout.println(i);
+				r.append(i).newLine();
+			}
+		}
+		r.flush();
+		eout.flush();
+		assertEquals(expected.toString(), actual.toString());
+		assertTrue(expected.size() > ReportRenderer.BLOCK_SIZE);
+	}
+}
@@ -0,0 +1,98 @@
+package mp.app;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.ArrayMarketData;
+import mp.app.marketdata.MarketData;
+import mp.app.measure.PriceMeasure;
+
+public class StreamingValuationTest extends TestCase {
+
+	Path basket;
+
+	MarketData md;
+
+	List<String> names = new ArrayList<>();
+
+	@Override
+	protected void setUp() throws Exception {
+		Random random = new Random(17);
+		ArrayMarketData.Builder builder = new ArrayMarketData.Builder();
+		for (int i = 0; i < 50; i++) {
+			builder.add("Q" + i, random.nextDouble() * 100);
+		}
+		md = builder.build();
+
+		StringBuilder sb = new StringBuilder("# streaming\n");
+		for (int i = 0; i < 5000; i++) {
+			String name = "asset" + random.nextInt(100_000);
+			names.add(name);
+			// missing quotes price to NaN
+			sb.append("Q").append(random.nextInt(60)).append(' ')
+				.append(random.nextInt(1000) / 10.0).append(' ').append(name).append('\n');
+		}
+		basket = Files.createTempFile("streaming", ".basket");
+		Files.write(basket, sb.toString().getBytes());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Files.delete(basket);
+	}
+
+	public void testSorted() throws Exception {
+		Map<Asset, Double> map = new BasketPricer().valuate(Utils.getBasket(basket), md, new PriceMeasure());
+		List<String> expected = new ArrayList<>();
+		DoubleSummaryStatistics expectedStats = new DoubleSummaryStatistics();
+		map.entrySet()
+			.stream()
+			.sorted((a, b) -> a.getKey().getName().compareTo(b.getKey().getName()))
+			.forEachOrdered(e -> {
+				expected.add(e.getKey().getName() + " " + e.getValue());
+				expectedStats.accept(e.getValue());
+			});
+
+		for (int runSize : new int[] { 7, 1000, 10_000 }) {
+			StreamingValuation valuation = new StreamingValuation(new PriceMeasure(), true, runSize);
+			valuation.fanIn = 8;
+			List<String> rows = new ArrayList<>();
+			DoubleSummaryStatistics stats = valuation.valuate(basket, md, (name, value) -> rows.add(name + " " + value));
+
+			// rows of equal names may come in any order
+			assertEquals(sorted(expected), sorted(rows));
+			assertEquals(names.stream().sorted().collect(Collectors.toList()),
+				rows.stream().map(r -> r.substring(0, r.indexOf(' '))).collect(Collectors.toList()));
+			assertEquals(expectedStats.getCount(), stats.getCount());
+			assertEquals(Double.valueOf(expectedStats.getSum()), Double.valueOf(stats.getSum()));
+			assertEquals(map.values().stream().filter(v -> Double.isNaN(v)).count(), valuation.nanCount);
+			assertEquals(runSize < 5000 ? (5000 + runSize - 1) / runSize : 0, valuation.spilledRuns);
+			// 715 runs of size 7 are merged into 90, 12 and 2 runs before the final merge
+			assertEquals(runSize == 7 ? 3 : 0, valuation.mergePasses);
+		}
+	}
+
+	public void testUnsorted() throws Exception {
+		StreamingValuation valuation = new StreamingValuation(new PriceMeasure(), false, 7);
+		List<String> rows = new ArrayList<>();
+		DoubleSummaryStatistics stats = valuation.valuate(basket, md, (name, value) -> rows.add(name));
+
+		assertEquals(names, rows);
+		assertEquals(5000, stats.getCount());
+		assertEquals(0, valuation.spilledRuns);
+	}
+
+	static List<String> sorted(List<String> rows) {
+		List<String> list = new ArrayList<>(rows);
+		Collections.sort(list);
+		return list;
+	}
+}
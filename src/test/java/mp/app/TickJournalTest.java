@@ -0,0 +1,91 @@
+package mp.app;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.MarketData;
+
+public class TickJournalTest extends TestCase {
+
+	Path dir;
+
+	Path feed;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("journal");
+		feed = dir.resolve("test.feed");
+
+		Map<String, Double> quotes = new HashMap<>();
+		quotes.put("FRUIT.BANA", 3.5);
+		quotes.put("FRUIT.ORAN", 2.99);
+		quotes.put("FRUIT.AAPL", 92.77);
+		Utils.persistQuoteValuesWithLock(feed, quotes, "test");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (Path p : Files.newDirectoryStream(dir)) {
+			Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	Map<String, Double> update(double bana, double oran, double aapl) {
+		Map<String, Double> quotes = new HashMap<>();
+		quotes.put("FRUIT.BANA", bana);
+		quotes.put("FRUIT.ORAN", oran);
+		quotes.put("FRUIT.AAPL", aapl);
+		return quotes;
+	}
+
+	public void testAppendOnlyChanges() throws Exception {
+		TickJournal journal = new TickJournal(feed, "test");
+		assertEquals(0, journal.append(update(3.5, 2.99, 92.77)));
+		assertFalse(Files.exists(TickJournal.journalOf(feed)));
+
+		assertEquals(1, journal.append(update(3.6, 2.99, 92.77)));
+		assertEquals(2, journal.append(update(3.7, 3.01, 92.77)));
+		assertEquals(3, Files.readAllLines(TickJournal.journalOf(feed)).size());
+
+		TickJournal.State state = TickJournal.replay(feed);
+		assertEquals(3, state.getSequence());
+		assertEquals(3.7, state.getQuotes().get("FRUIT.BANA"), EPSILON);
+		assertEquals(3.01, state.getQuotes().get("FRUIT.ORAN"), EPSILON);
+		assertEquals(92.77, state.getQuotes().get("FRUIT.AAPL"), EPSILON);
+
+		MarketData md = Utils.getMarketDataJournaled(feed);
+		assertEquals(3, md.getQuotes().size());
+		assertEquals(3.7, md.getPrice("FRUIT.BANA"), EPSILON);
+	}
+
+	public void testCompaction() throws Exception {
+		TickJournal journal = new TickJournal(feed, "test");
+		journal.append(update(3.6, 2.99, 92.77));
+		journal.append(update(3.7, 3.01, Double.NaN));
+		journal.compact();
+
+		assertEquals(0, Files.size(TickJournal.journalOf(feed)));
+		assertEquals(0, journal.getAppended());
+
+		TickJournal.State state = TickJournal.replay(feed);
+		assertEquals(4, state.getSequence());
+		assertEquals(3.7, state.getQuotes().get("FRUIT.BANA"), EPSILON);
+		assertTrue(Double.isNaN(state.getQuotes().get("FRUIT.AAPL")));
+
+		// reopened journal continues the sequence
+		TickJournal reopened = new TickJournal(feed, "test");
+		assertEquals(1, reopened.append(update(3.8, 3.01, Double.NaN)));
+		state = TickJournal.replay(feed);
+		assertEquals(5, state.getSequence());
+		assertEquals(3.8, state.getQuotes().get("FRUIT.BANA"), EPSILON);
+
+		// plain reader still sees the compacted base
+		assertEquals(3.7, Utils.getMarketDataWithLock(feed).getPrice("FRUIT.BANA"), EPSILON);
+	}
+}
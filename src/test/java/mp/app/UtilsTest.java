@@ -2,12 +2,19 @@ package mp.app;
 
 import static mp.app.TestUtils.EPSILON;
 
+import java.io.BufferedReader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.TestCase;
 import mp.app.marketdata.MarketData;
+import mp.app.marketdata.QuoteValue;
 
 public class UtilsTest extends TestCase {
 
@@ -40,4 +47,63 @@ public class UtilsTest extends TestCase {
 
 		assertTrue(Double.isNaN(md.getQuote("nonexistent").getPrice()));
 	}
+
+	public void testMarketDataMappedLoad() throws Exception {
+		URL url = getClass().getClassLoader().getResource(TEST_FEED);
+		MarketData expected = Utils.getMarketDataWithLock(Paths.get(url.toURI()));
+		MarketData md = Utils.getMarketDataMappedWithLock(Paths.get(url.toURI()));
+		assertNotNull(md);
+		assertEquals(expected.getQuotes().size(), md.getQuotes().size());
+		
+		for (QuoteValue qv : expected.getQuotes()) {
+			assertEquals(Double.valueOf(qv.getPrice()), Double.valueOf(md.getQuote(qv.getName()).getPrice()));
+		}
+		assertTrue(Double.isNaN(md.getQuote("nonexistent").getPrice()));
+	}
+
+	public void testAtomicPublication() throws Exception {
+		Path dir = Files.createTempDirectory("atomic");
+		Path path = dir.resolve(TEST_FEED);
+		try {
+			Map<String, Double> quotes = new HashMap<>();
+			quotes.put("FRUIT.BANA", 3.5);
+			quotes.put("FRUIT.ORAN", 2.99);
+			Utils.persistQuoteValuesAtomically(path, quotes, getName());
+			
+			MarketData md = Utils.getMarketData(path);
+			assertEquals(2, md.getQuotes().size());
+			assertEquals(3.5, md.getQuote("FRUIT.BANA").getPrice(), EPSILON);
+			
+			// replaced while the previous file is still open
+			quotes.put("FRUIT.BANA", 4.0);
+			try (BufferedReader in = Files.newBufferedReader(path)) {
+				Utils.persistQuoteValuesAtomically(path, quotes, getName());
+				// the open file keeps the previous version
+				assertTrue(in.lines().anyMatch(line -> line.startsWith("FRUIT.BANA") && line.contains("3.5")));
+			}
+			md = Utils.getMarketDataMapped(path, null);
+			assertEquals(4.0, md.getQuote("FRUIT.BANA").getPrice(), EPSILON);
+			assertFalse(Files.exists(dir.resolve(TEST_FEED + ".tmp")));
+		} finally {
+			Files.deleteIfExists(path);
+			Files.delete(dir);
+		}
+	}
+
+	public void testTimestamp() throws Exception {
+		Path path = Files.createTempFile("test", ".feed");
+		try {
+			long before = Utils.nowMicros();
+			Utils.persistQuoteValuesWithLock(path, Collections.singletonMap("FRUIT.BANA", 3.5), getName());
+			long micros = Utils.getTimestampMicros(path);
+			// header time has at least millisecond precision
+			assertTrue(micros >= before - 1_000);
+			assertTrue(micros <= Utils.nowMicros());
+			
+			URL url = getClass().getClassLoader().getResource(TEST_BASKET);
+			assertEquals(-1, Utils.getTimestampMicros(Paths.get(url.toURI())));
+		} finally {
+			Files.delete(path);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package mp.app;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import mp.app.metrics.PipelineMetrics;
+
+public class ValuationCacheTest extends TestCase {
+
+	Path a;
+
+	Path b;
+
+	@Override
+	protected void setUp() throws Exception {
+		a = Files.createTempFile("cache", ".basket");
+		b = Files.createTempFile("cache", ".feed");
+		Files.write(a, "FRUIT.BANA 1 banana\n".getBytes());
+		Files.write(b, "FRUIT.BANA 3.5\n".getBytes());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Files.delete(a);
+		Files.delete(b);
+	}
+
+	public void testFingerprint() throws Exception {
+		ValuationCache.Fingerprint f = ValuationCache.Fingerprint.of(b);
+		assertEquals(f, ValuationCache.Fingerprint.of(b));
+		assertEquals(15, f.size);
+		assertTrue(f.isCurrent());
+
+		// same size and modification time, different content
+		FileTime modified = Files.getLastModifiedTime(b);
+		Files.write(b, "FRUIT.BANA 3.6\n".getBytes());
+		Files.setLastModifiedTime(b, modified);
+		assertTrue(f.isCurrent());
+		assertFalse(f.equals(ValuationCache.Fingerprint.of(b)));
+
+		Files.write(b, "FRUIT.BANA 3.66\n".getBytes());
+		assertFalse(f.isCurrent());
+
+		assertNull(ValuationCache.keyOf(a, b.resolveSibling("nonexistent")));
+	}
+
+	public void testEviction() throws Exception {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long hits = metrics.getCacheHits();
+		long misses = metrics.getCacheMisses();
+
+		ValuationCache cache = new ValuationCache(2);
+		List<ValuationCache.Fingerprint> ab = ValuationCache.keyOf(a, b);
+		List<ValuationCache.Fingerprint> ba = ValuationCache.keyOf(b, a);
+		List<ValuationCache.Fingerprint> aa = ValuationCache.keyOf(a, a);
+		ValuationCache.Result result = new ValuationCache.Result(Collections.emptyMap());
+
+		assertNull(cache.get(ab));
+		assertTrue(cache.put(ab, result));
+		assertTrue(cache.put(ba, result));
+		assertSame(result, cache.get(ab));
+		// least recently used is evicted
+		assertTrue(cache.put(aa, result));
+		assertEquals(2, cache.size());
+		assertNull(cache.get(ba));
+		assertSame(result, cache.get(ValuationCache.keyOf(a, b)));
+
+		assertEquals(hits + 2, metrics.getCacheHits());
+		assertEquals(misses + 2, metrics.getCacheMisses());
+
+		// modified since the key was taken
+		cache.clear();
+		Files.write(b, "FRUIT.BANA 3.55\n".getBytes());
+		assertFalse(cache.put(ab, result));
+		assertEquals(0, cache.size());
+
+		// rewritten keeping size and modification time
+		ab = ValuationCache.keyOf(a, b);
+		FileTime modified = Files.getLastModifiedTime(b);
+		Files.write(b, "FRUIT.BANA 3.56\n".getBytes());
+		Files.setLastModifiedTime(b, modified);
+		assertFalse(cache.put(ab, result));
+		assertEquals(0, cache.size());
+	}
+
+	public void testResult() {
+		Map<Asset, Double> map = new HashMap<>();
+		map.put(new Asset("b", "Q", 1), 2.0);
+		map.put(new Asset("a", "Q", 1), Double.NaN);
+		map.put(new Asset("c", "Q", 1), 3.0);
+
+		ValuationCache.Result result = new ValuationCache.Result(map);
+		assertEquals("a", result.getEntries().get(0).getKey().getName());
+		assertEquals("c", result.getEntries().get(2).getKey().getName());
+		assertEquals(3, result.getStats().getCount());
+		assertEquals(1, result.getNanCount());
+	}
+}
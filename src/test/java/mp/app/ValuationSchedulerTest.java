@@ -0,0 +1,76 @@
+package mp.app;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ValuationSchedulerTest extends TestCase {
+
+	public ValuationSchedulerTest(String testName) {
+		super(testName);
+	}
+
+	public void testCoalescing() throws Exception {
+		List<Boolean> runs = new CopyOnWriteArrayList<>();
+		try (ValuationScheduler scheduler = new ValuationScheduler(runs::add, 200)) {
+			for (int i = 0; i < 100; i++) {
+				scheduler.request(false, true);
+			}
+			scheduler.request(true, false);
+			scheduler.request(false, false);
+
+			assertTrue(scheduler.awaitIdle(5000));
+			assertEquals(101, scheduler.getRequests());
+			assertEquals(1, scheduler.getRuns());
+			assertEquals(Boolean.TRUE, runs.get(0));
+
+			scheduler.request(false, true);
+			assertTrue(scheduler.awaitIdle(5000));
+			assertEquals(2, runs.size());
+			assertEquals(Boolean.FALSE, runs.get(1));
+		}
+	}
+
+	public void testSingleRunAtATime() throws Exception {
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		ValuationScheduler.Task task = bt -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			Thread.sleep(50);
+			active.decrementAndGet();
+		};
+
+		try (ValuationScheduler scheduler = new ValuationScheduler(task, 0)) {
+			for (int i = 0; i < 20; i++) {
+				scheduler.request(false, true);
+				Thread.sleep(5);
+			}
+			assertTrue(scheduler.awaitIdle(5000));
+			assertEquals(1, maxActive.get());
+			// requests during a running valuation are folded into the next one
+			assertTrue(scheduler.getRuns() < 20);
+		}
+	}
+
+	public void testFailingTask() throws Exception {
+		try (ValuationScheduler scheduler = new ValuationScheduler(bt -> { throw new IllegalStateException(); }, 0)) {
+			scheduler.request(true, true);
+			assertTrue(scheduler.awaitIdle(5000));
+			scheduler.request(true, true);
+			assertTrue(scheduler.awaitIdle(5000));
+			assertEquals(2, scheduler.getRuns());
+		}
+	}
+
+	public void testFailingTaskWithError() throws Exception {
+		try (ValuationScheduler scheduler = new ValuationScheduler(bt -> { throw new StackOverflowError(); }, 0)) {
+			scheduler.request(true, true);
+			assertTrue(scheduler.awaitIdle(5000));
+			scheduler.request(true, true);
+			assertTrue(scheduler.awaitIdle(5000));
+			assertEquals(2, scheduler.getRuns());
+		}
+	}
+}
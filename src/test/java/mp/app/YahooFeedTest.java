@@ -0,0 +1,121 @@
+package mp.app;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+import mp.app.marketdata.MarketData;
+
+public class YahooFeedTest extends TestCase {
+
+	HttpServer server;
+
+	List<String> requests = new CopyOnWriteArrayList<>();
+
+	@Override
+	protected void setUp() throws Exception {
+		// answers each symbol with its length, N/A for unknown ones
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/quotes.csv", exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			requests.add(query);
+			StringBuilder sb = new StringBuilder();
+			String symbols = query.substring(2, query.indexOf('&'));
+			if (symbols.contains("broken")) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+			for (String s : symbols.split(",")) {
+				sb.append(s.startsWith("nonexistent") ? "N/A" : String.valueOf(s.length())).append('\n');
+			}
+			byte[] body = sb.toString().getBytes(StandardCharsets.US_ASCII);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	YahooFeed newFeed() {
+		YahooFeed feed = new YahooFeed();
+		feed.url = "http://127.0.0.1:" + server.getAddress().getPort() + "/quotes.csv";
+		return feed;
+	}
+
+	public void testFetch() throws Exception {
+		Map<String, Double> map = newFeed().fetch(new TreeSet<>(Arrays.asList("GOOGL", "nonexistent", "FB")));
+		assertEquals(3, map.size());
+		assertEquals(5.0, map.get("GOOGL"));
+		assertEquals(2.0, map.get("FB"));
+		assertTrue(Double.isNaN(map.get("nonexistent")));
+	}
+
+	public void testBatchedExecution() throws Exception {
+		Path path = Files.createTempFile("yahoo", ".feed");
+		try {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 25; i++) {
+				sb.append("S").append(i).append(" 0\n");
+			}
+			sb.append("nonexistent 0\n");
+			Files.write(path, sb.toString().getBytes());
+
+			YahooFeed feed = newFeed();
+			feed.batchSize = 4;
+			feed.execute(path, new PrintStream(new OutputStream() {
+				public void write(int b) {}
+			}));
+
+			assertEquals(7, requests.size());
+			for (String query : requests) {
+				assertTrue(query, query.split(",").length <= 4);
+			}
+			MarketData md = Utils.getMarketDataWithLock(path);
+			assertEquals(26, md.getQuotes().size());
+			assertEquals(3.0, md.getQuote("S24").getPrice());
+			assertTrue(Double.isNaN(md.getQuote("nonexistent").getPrice()));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testFailedBatch() throws Exception {
+		Path path = Files.createTempFile("yahoo", ".feed");
+		try {
+			Files.write(path, Arrays.asList("S0 1", "S1 1", "broken 7"));
+
+			YahooFeed feed = newFeed();
+			feed.batchSize = 2;
+			feed.retries = 0;
+			feed.execute(path, new PrintStream(new OutputStream() {
+				public void write(int b) {}
+			}));
+
+			// the failed batch keeps its persisted value
+			MarketData md = Utils.getMarketDataWithLock(path);
+			assertEquals(3, md.getQuotes().size());
+			assertEquals(2.0, md.getQuote("S0").getPrice());
+			assertEquals(7.0, md.getQuote("broken").getPrice());
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package mp.app.marketdata;
+
+import static mp.app.TestUtils.EPSILON;
+
+import junit.framework.TestCase;
+
+public class ArrayMarketDataTest extends TestCase {
+
+	public void testLookup() {
+		ArrayMarketData.Builder builder = new ArrayMarketData.Builder();
+		for (int i = 0; i < 1000; i++) {
+			builder.add("SYM." + i, i / 4d);
+		}
+		builder.add("SYM.NAN", Double.NaN);
+		ArrayMarketData md = builder.build();
+
+		assertEquals(1001, md.getQuotes().size());
+		for (int i = 0; i < 1000; i++) {
+			String name = "SYM." + i;
+			int slot = md.slotOf(name);
+			assertEquals(i, slot);
+			assertEquals(i / 4d, md.getPrice(slot), EPSILON);
+			assertEquals(i / 4d, md.getPrice(name), EPSILON);
+			assertEquals(name, md.getQuote(name).getName());
+		}
+
+		assertTrue(Double.isNaN(md.getPrice("SYM.NAN")));
+		assertTrue(Double.isNaN(md.getPrice("nonexistent")));
+		assertEquals(-1, md.slotOf("nonexistent"));
+		assertNull(md.getQuote("nonexistent"));
+	}
+
+	public void testEmpty() {
+		ArrayMarketData md = new ArrayMarketData.Builder().build();
+		assertTrue(md.getQuotes().isEmpty());
+		assertNull(md.getQuote("nonexistent"));
+	}
+
+	public void testDuplicates() {
+		try {
+			new ArrayMarketData.Builder()
+				.add("SYM.A", 1)
+				.add("SYM.A", 2)
+				.build();
+			fail("Fail expected for duplicated names");
+		} catch (IllegalStateException e) {
+			// OK
+		}
+	}
+
+	public void testLayoutEquality() {
+		SymbolIndex a = new SymbolIndex(new String[] { "A", "B", "C" });
+		SymbolIndex b = new SymbolIndex(new String[] { "A", "B", "C" });
+		SymbolIndex c = new SymbolIndex(new String[] { "A", "C", "B" });
+		assertEquals(a, b);
+		assertFalse(a.equals(c));
+	}
+}
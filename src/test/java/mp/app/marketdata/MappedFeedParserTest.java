@@ -0,0 +1,73 @@
+package mp.app.marketdata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MappedFeedParserTest extends TestCase {
+
+	static final String FEED = 
+			"################################\n"
+		+	"# Market Data File\n"
+		+	"\n"
+		+	"FRUIT.BANA\t3.5\r\n"
+		+	"  FRUIT.ORAN   2.99  \r"
+		+	"FRUIT.AAPL\t92.77 // :( as of 29.04\n"
+		+	"   # indented comment\n"
+		+	"FRUIT.LEMO\t-1.59e2\n"
+		+	"nonexistent for test purposes\n"
+		+	"FRUIT.MISS\n"
+		+	"FRUIT.PEAC\t+2.72";
+
+	Map<String, Double> parse(String str) {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		Map<String, Double> map = new LinkedHashMap<>();
+		new MappedFeedParser(StandardCharsets.UTF_8)
+			.parse(ByteBuffer.wrap(bytes), 0, bytes.length, map::put);
+		return map;
+	}
+
+	public void testSameResultsAsLineParser() {
+		Map<String, Double> map = parse(FEED);
+
+		Map<String, Double> expected = new LinkedHashMap<>();
+		for (String line : FEED.split("\\r\\n|\\r|\\n")) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				QuoteValue qv = QuoteValue.parse(line);
+				expected.put(qv.getName(), qv.getPrice());
+			}
+		}
+
+		assertEquals(expected, map);
+		assertEquals(7, map.size());
+		assertTrue(Double.isNaN(map.get("nonexistent")));
+		assertTrue(Double.isNaN(map.get("FRUIT.MISS")));
+		assertEquals(-159d, map.get("FRUIT.LEMO"));
+	}
+
+	public void testNumbersBitIdentical() {
+		Random rnd = new Random(42);
+		MappedFeedParser p = new MappedFeedParser(StandardCharsets.US_ASCII);
+		for (int i = 0; i < 100000; i++) {
+			String str;
+			switch (i % 3) {
+				case 0:
+					str = Double.toString(rnd.nextDouble() * Math.pow(10, rnd.nextInt(12)));
+					break;
+				case 1:
+					str = (rnd.nextLong() % 100000000000L) + "." + Math.abs(rnd.nextInt());
+					break;
+				default:
+					str = String.format("%.5f", rnd.nextGaussian() * 1000);
+			}
+			byte[] bytes = str.getBytes(StandardCharsets.US_ASCII);
+			double d = p.parseDouble(ByteBuffer.wrap(bytes), 0, bytes.length);
+			assertEquals(str, Double.doubleToLongBits(Double.parseDouble(str)), Double.doubleToLongBits(d));
+		}
+	}
+}
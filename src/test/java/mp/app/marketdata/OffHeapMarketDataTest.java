@@ -0,0 +1,106 @@
+package mp.app.marketdata;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import mp.app.Asset;
+import mp.app.BasketPricer;
+import mp.app.CompiledBasket;
+import mp.app.TestUtils;
+import mp.app.measure.PriceMeasure;
+
+public class OffHeapMarketDataTest extends TestCase {
+
+	MarketData heap() {
+		return TestUtils.of(Arrays.asList(
+			new QuoteValue("FRUIT.BANA", 1.5),
+			new QuoteValue("FRUIT.ORAN", 2),
+			new QuoteValue("FRUIT.AAPL", Double.NaN)));
+	}
+
+	public void testCopyOf() {
+		try (OffHeapMarketData md = OffHeapMarketData.copyOf(heap())) {
+			assertEquals(3, md.size());
+			assertEquals(1.5, md.getPrice("FRUIT.BANA"), EPSILON);
+			assertEquals(2, md.getQuote("FRUIT.ORAN").getPrice(), EPSILON);
+			assertTrue(Double.isNaN(md.getPrice("FRUIT.AAPL")));
+			assertNull(md.getQuote("NONEXISTENT"));
+			assertEquals(3, md.getQuotes().size());
+			assertTrue(md.getCapacity() > 0);
+		}
+	}
+
+	public void testValuation() {
+		Asset bana = new Asset("Bananas", "FRUIT.BANA", 10);
+		Asset oran = new Asset("Oranges", "FRUIT.ORAN", 2);
+		Set<Asset> basket = new HashSet<>(Arrays.asList(bana, oran));
+
+		Map<Asset, Double> expected = new BasketPricer().valuate(basket, heap(), new PriceMeasure());
+		try (OffHeapMarketData md = OffHeapMarketData.copyOf(heap())) {
+			assertEquals(expected, new BasketPricer().valuate(basket, md, new PriceMeasure()));
+		}
+	}
+
+	public void testClose() {
+		OffHeapMarketData md = OffHeapMarketData.copyOf(heap());
+		md.close();
+		md.close();
+		assertTrue(md.isClosed());
+		try {
+			md.getPrice("FRUIT.BANA");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			md.getQuotes().iterator().next();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	public void testRebindAfterClose() {
+		Asset bana = new Asset("Bananas", "FRUIT.BANA", 10);
+		Asset oran = new Asset("Oranges", "FRUIT.ORAN", 2);
+		CompiledBasket basket = new CompiledBasket(Arrays.asList(bana, oran));
+
+		OffHeapMarketData md1 = OffHeapMarketData.copyOf(heap());
+		basket.valuate(md1, new PriceMeasure());
+		md1.close();
+
+		// new snapshot of the same symbols, the previous one is closed
+		try (OffHeapMarketData md2 = OffHeapMarketData.copyOf(heap())) {
+			assertEquals(md1.layout, md2.getLayout());
+			assertTrue(basket.isBoundTo(md2.getLayout()));
+			Map<Asset, Double> values = basket.toMap(basket.valuate(md2, new PriceMeasure()));
+			assertEquals(15, values.get(bana), EPSILON);
+			assertEquals(4, values.get(oran), EPSILON);
+		}
+	}
+
+	public void testOpen() throws Exception {
+		Path path = Files.createTempFile("offheap", ".snap");
+		try {
+			Map<String, Double> quotes = new HashMap<>();
+			quotes.put("SYM.1", 1d);
+			quotes.put("SYM.2", 2d);
+			SnapshotFormat.write(path, quotes);
+
+			try (OffHeapMarketData md = OffHeapMarketData.open(path)) {
+				assertEquals(2, md.size());
+				assertEquals(2, md.getPrice("SYM.2"), EPSILON);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package mp.app.marketdata;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+public class SharedSegmentTest extends TestCase {
+
+	Path dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("shared");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (Path p : Files.newDirectoryStream(dir)) {
+			Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	public void testPublishAndRead() throws Exception {
+		Path path = dir.resolve("test.shm");
+		SharedSegment writer = SharedSegment.create(path, new String[] { "FRUIT.AAPL", "FRUIT.ÄPFEL" });
+		SharedMarketData md = new SharedMarketData(SharedSegment.open(path));
+		assertEquals(2, md.size());
+		assertEquals(0, md.getUpdates());
+		assertTrue(Double.isNaN(md.getPrice("FRUIT.AAPL")));
+
+		Map<String, Double> quotes = new HashMap<>();
+		quotes.put("FRUIT.AAPL", 92.77);
+		assertTrue(writer.publish(quotes));
+		assertEquals(1, md.getUpdates());
+		assertEquals(92.77, md.getPrice("FRUIT.AAPL"), EPSILON);
+		assertEquals(92.77, md.getPrice(md.slotOf("FRUIT.AAPL")), EPSILON);
+		assertEquals("FRUIT.ÄPFEL", md.getQuote("FRUIT.ÄPFEL").getName());
+		assertTrue(Double.isNaN(md.getPrice("nonexistent")));
+		assertNull(md.getQuote("nonexistent"));
+
+		// snapshot is not affected by later updates
+		ArrayMarketData snapshot = md.snapshot();
+		assertSame(md.getLayout(), snapshot.getLayout());
+		quotes.put("FRUIT.AAPL", 93.0);
+		writer.publish(quotes);
+		assertEquals(92.77, snapshot.getPrice("FRUIT.AAPL"), EPSILON);
+		assertEquals(93.0, md.getPrice("FRUIT.AAPL"), EPSILON);
+
+		// unknown quotes are rejected as a whole
+		quotes.put("FRUIT.BANA", 3.5);
+		assertFalse(writer.publish(quotes));
+		assertEquals(2, md.getUpdates());
+		assertEquals(93.0, md.getPrice("FRUIT.AAPL"), EPSILON);
+	}
+
+	public void testStale() throws Exception {
+		Path path = dir.resolve("test.shm");
+		SharedSegment writer = SharedSegment.create(path, new String[] { "FRUIT.AAPL" });
+		SharedMarketData md = new SharedMarketData(SharedSegment.open(path));
+		assertFalse(md.isStale());
+
+		SharedSegment.create(path, new String[] { "FRUIT.AAPL", "FRUIT.BANA" })
+			.publish(Collections.singletonMap("FRUIT.BANA", 3.5));
+		writer.markStale();
+		assertTrue(md.isStale());
+		assertEquals(1, md.size());
+
+		SharedMarketData reopened = new SharedMarketData(SharedSegment.open(path));
+		assertFalse(reopened.isStale());
+		assertEquals(3.5, reopened.getPrice("FRUIT.BANA"), EPSILON);
+	}
+
+	public void testAttach() throws Exception {
+		Path path = dir.resolve("test.shm");
+		SharedSegment.create(path, new String[] { "FRUIT.AAPL" })
+			.publish(Collections.singletonMap("FRUIT.AAPL", 92.77));
+
+		SharedSegment writer = SharedSegment.attach(path);
+		assertEquals(1, writer.getUpdates());
+		assertEquals(92.77, writer.getPrice(0), EPSILON);
+		writer.put(0, 93.0);
+		assertEquals(93.0, SharedSegment.open(path).getPrice(0), EPSILON);
+	}
+
+	public void testConcurrentReads() throws Exception {
+		Path path = dir.resolve("test.shm");
+		SharedSegment writer = SharedSegment.create(path, new String[] { "A", "B" });
+		SharedSegment reader = SharedSegment.open(path);
+		AtomicBoolean failed = new AtomicBoolean();
+
+		Thread t = new Thread(() -> {
+			double last = 0;
+			for (int i = 0; i < 100_000; i++) {
+				double v = reader.getPrice(0);
+				if (v < last) {
+					failed.set(true);
+				}
+				if (!Double.isNaN(v)) {
+					last = v;
+				}
+			}
+		});
+		t.start();
+		for (int i = 1; t.isAlive(); i++) {
+			writer.put(0, i);
+		}
+		t.join();
+		assertFalse(failed.get());
+	}
+}
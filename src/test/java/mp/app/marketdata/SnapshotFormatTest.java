@@ -0,0 +1,82 @@
+package mp.app.marketdata;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SnapshotFormatTest extends TestCase {
+
+	Path dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("snapshot");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (Path p : Files.newDirectoryStream(dir)) {
+			Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	Map<String, Double> quotes(double factor) {
+		Map<String, Double> map = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			map.put("SYM." + i, i * factor);
+		}
+		map.put("FRUIT.ÄPFEL", Double.NaN);
+		return map;
+	}
+
+	public void testWriteAndOpen() throws Exception {
+		Path path = dir.resolve("test.snap");
+		Map<String, Double> quotes = quotes(0.5);
+		SnapshotFormat.write(path, quotes);
+
+		ByteBufferMarketData md = SnapshotFormat.open(path);
+		assertEquals(quotes.size(), md.size());
+		assertEquals(quotes.size(), md.getQuotes().size());
+		for (int i = 0; i < 1000; i++) {
+			String name = "SYM." + i;
+			assertEquals(i * 0.5, md.getPrice(name), EPSILON);
+			assertEquals(i * 0.5, md.getPrice(md.slotOf(name)), EPSILON);
+			assertEquals(name, md.getQuote(name).getName());
+		}
+		assertTrue(Double.isNaN(md.getPrice("FRUIT.ÄPFEL")));
+		assertTrue(Double.isNaN(md.getPrice("nonexistent")));
+		assertNull(md.getQuote("nonexistent"));
+		assertTrue(md.getTimestamp() > 0);
+	}
+
+	public void testLayout() throws Exception {
+		Path a = dir.resolve("a.snap");
+		Path b = dir.resolve("b.snap");
+		SnapshotFormat.write(a, quotes(1));
+		SnapshotFormat.write(b, quotes(2));
+		assertEquals(SnapshotFormat.open(a).getLayout(), SnapshotFormat.open(b).getLayout());
+
+		Map<String, Double> other = quotes(1);
+		other.put("SYM.NEW", 1d);
+		SnapshotFormat.write(b, other);
+		assertFalse(SnapshotFormat.open(a).getLayout().equals(SnapshotFormat.open(b).getLayout()));
+	}
+
+	public void testInvalidFile() throws Exception {
+		Path path = dir.resolve("test.feed");
+		Files.write(path, "FRUIT.BANA	3.5".getBytes());
+		try {
+			SnapshotFormat.open(path);
+			fail("Fail expected for text file");
+		} catch (IOException e) {
+			// OK
+		}
+	}
+}
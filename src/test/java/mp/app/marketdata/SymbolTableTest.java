@@ -0,0 +1,102 @@
+package mp.app.marketdata;
+
+import static mp.app.TestUtils.EPSILON;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+import mp.app.Asset;
+
+public class SymbolTableTest extends TestCase {
+
+	SymbolTable symbols = new SymbolTable();
+
+	public void testIds() {
+		int a = symbols.idOf("FRUIT.BANA");
+		int b = symbols.idOf("FRUIT.ORAN");
+		assertEquals(0, a);
+		assertEquals(1, b);
+		assertEquals(a, symbols.idOf(new String("FRUIT.BANA")));
+		assertEquals(b, symbols.idOf("x FRUIT.ORAN y", 2, 12));
+		assertEquals(2, symbols.size());
+		assertEquals(-1, symbols.find("FRUIT.AAPL"));
+		assertEquals("FRUIT.ORAN", symbols.nameOf(b));
+
+		ByteBuffer bb = ByteBuffer.wrap("FRUIT.BANA FRUIT.AAPL".getBytes(StandardCharsets.US_ASCII));
+		assertEquals(a, symbols.idOf(bb, 0, 10));
+		assertEquals(2, symbols.idOf(bb, 11, 21));
+		assertEquals("FRUIT.AAPL", symbols.nameOf(2));
+	}
+
+	public void testGrowth() {
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, symbols.idOf("SYM." + i));
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, symbols.find("SYM." + i));
+			assertEquals("SYM." + i, symbols.nameOf(i));
+		}
+	}
+
+	public void testConcurrentAdd() {
+		int[][] ids = new int[4][5000];
+		IntStream.range(0, ids.length).parallel().forEach(t -> {
+			for (int i = 0; i < ids[t].length; i++) {
+				ids[t][i] = symbols.idOf("SYM." + i);
+			}
+		});
+		assertEquals(5000, symbols.size());
+		for (int t = 1; t < ids.length; t++) {
+			assertTrue(Arrays.equals(ids[0], ids[t]));
+		}
+	}
+
+	public void testNameEnd() {
+		assertEquals(4, SymbolTable.nameEnd("FRUI\t1"));
+		assertEquals(4, SymbolTable.nameEnd("FRUI"));
+		assertEquals(0, SymbolTable.nameEnd(" FRUI"));
+	}
+
+	public void testCanonicalNames() throws Exception {
+		QuoteValue qv = QuoteValue.parse("FRUIT.KIWI\t1.5");
+		Asset asset = Asset.parse("FRUIT.KIWI\t10\tKiwis");
+		assertEquals(qv.getId(), asset.getQuoteId());
+		assertSame(qv.getName(), asset.getQuoteName());
+		assertEquals(1.5, qv.getPrice(), EPSILON);
+		assertEquals(10, asset.getQuantity(), EPSILON);
+		assertEquals("Kiwis", asset.getName());
+	}
+
+	public void testPriceById() {
+		ArrayMarketData md = new ArrayMarketData.Builder()
+			.add("FRUIT.KIWI", 1.5)
+			.add("FRUIT.PEAR", 2.5)
+			.build();
+		SymbolTable global = SymbolTable.get();
+		assertEquals(2.5, md.getPriceById(global.idOf("FRUIT.PEAR")), EPSILON);
+		assertEquals(global.idOf("FRUIT.KIWI"), md.getQuote("FRUIT.KIWI").getId());
+		assertTrue(Double.isNaN(md.getPriceById(global.idOf("FRUIT.NONEXISTENT"))));
+	}
+
+	public void testIndexByIds() {
+		SymbolTable global = SymbolTable.get();
+		// IDs far beyond the size of the index
+		for (int i = 0; i < 1000; i++) {
+			global.idOf("FRUIT.FILLER" + i);
+		}
+		String kiwi = new String("FRUIT.KIWI");
+		String[] names = { "FRUIT.PEAR", kiwi };
+		SymbolIndex index = new SymbolIndex(names);
+		assertEquals(0, index.slotOfId(global.idOf("FRUIT.PEAR")));
+		assertEquals(1, index.slotOfId(global.idOf("FRUIT.KIWI")));
+		assertEquals(-1, index.slotOfId(global.idOf("FRUIT.FILLER0")));
+		assertEquals(-1, index.slotOfId(Integer.MAX_VALUE));
+		assertTrue(index.idTable.length < 1000);
+		// the caller's array is not rewritten
+		assertSame(kiwi, names[1]);
+		assertSame(global.nameOf(global.idOf("FRUIT.KIWI")), index.getName(1));
+	}
+}
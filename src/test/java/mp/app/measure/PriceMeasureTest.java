@@ -35,4 +35,13 @@ public class PriceMeasureTest extends TestCase {
 		double val = new PriceMeasure().calculate(a, md);	
 		assertTrue(Double.isNaN(val));
 	}
+
+	public void testColumnarIntoLargerOutput() {
+		// output reused across baskets may be longer than the basket
+		double[] out = { -1, -1, -1 };
+		new PriceMeasure().calculate(new Asset[] { a, a }, new double[] { 10, 20 }, new double[] { 2, 3 }, null, out);
+		assertEquals(20, out[0], EPSILON);
+		assertEquals(60, out[1], EPSILON);
+		assertEquals(-1, out[2], EPSILON);
+	}
 }
@@ -0,0 +1,49 @@
+package mp.app.metrics;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public void testExactValues() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			h.record(i);
+		}
+		assertEquals(100, h.getCount());
+		assertEquals(100, h.getMax());
+		assertEquals(50, h.getValueAtPercentile(50));
+		assertEquals(99, h.getValueAtPercentile(99));
+		assertEquals(100, h.getValueAtPercentile(99.9));
+		assertEquals(1, h.getValueAtPercentile(0));
+	}
+
+	public void testRelativeError() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (long v = 1; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+			int i = h.indexOf(v);
+			long high = h.highestValueOf(i);
+			assertTrue(v + " > " + high, v <= high);
+			assertTrue(v + " < " + high, high - v <= (v >> (h.precision - 1)) + 1);
+			assertEquals(i, h.indexOf(high));
+		}
+		assertTrue(h.indexOf(Long.MAX_VALUE) < h.counts.length());
+	}
+
+	public void testPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 0; i < 1000; i++) {
+			h.record(1_000);
+		}
+		h.record(5_000_000);
+		h.record(-1);
+		assertEquals(1002, h.getCount());
+		assertEquals(1_000, h.getValueAtPercentile(50), 1_000 / 64);
+		assertEquals(1_000, h.getValueAtPercentile(99), 1_000 / 64);
+		assertEquals(5_000_000, h.getValueAtPercentile(100));
+		assertEquals(5_000_000, h.getMax());
+
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getValueAtPercentile(99));
+	}
+}
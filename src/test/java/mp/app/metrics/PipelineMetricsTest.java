@@ -0,0 +1,73 @@
+package mp.app.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import junit.framework.TestCase;
+
+public class PipelineMetricsTest extends TestCase {
+
+	static final PrintStream NULL = new PrintStream(new OutputStream() {
+		public void write(int b) throws IOException {}
+	});
+
+	public void testRecord() throws Exception {
+		PipelineMetrics metrics = new PipelineMetrics();
+		long start = metrics.start();
+		Thread.sleep(5);
+		long nanos = metrics.record(Stage.PRICING, start);
+		metrics.record(Stage.PRICING, metrics.start());
+
+		StageStatistics s = metrics.getStage(Stage.PRICING);
+		assertEquals("PRICING", s.getName());
+		assertEquals(2, s.getCount());
+		assertEquals(nanos / 1e6, s.getMaxMillis());
+		assertTrue(s.getTotalMillis() >= 5);
+		assertEquals(s.getTotalMillis() / 2, s.getMeanMillis(), 1e-9);
+		assertEquals(0, metrics.getStage(Stage.FETCH).getCount());
+
+		metrics.reset();
+		assertEquals(0, metrics.getStage(Stage.PRICING).getCount());
+		assertEquals(0.0, metrics.getStage(Stage.PRICING).getMaxMillis());
+	}
+
+	public void testLock() throws Exception {
+		PipelineMetrics metrics = new PipelineMetrics();
+		Path path = Files.createTempFile("metrics", ".feed");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			metrics.lock(channel);
+		} finally {
+			Files.delete(path);
+		}
+		assertEquals(1, metrics.getLockAcquisitions());
+		assertTrue(metrics.getLockWaitMillis() >= 0);
+	}
+
+	public void testMBean() throws Exception {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long valuations = metrics.getValuations();
+		metrics.incrementValuations();
+		metrics.record(Stage.RENDERING, metrics.start());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(PipelineMetrics.OBJECT_NAME);
+		assertEquals(valuations + 1, server.getAttribute(name, "Valuations"));
+
+		CompositeData[] stages = (CompositeData[]) server.getAttribute(name, "Stages");
+		assertEquals(Stage.values().length, stages.length);
+		assertEquals("RENDERING", stages[Stage.RENDERING.ordinal()].get("name"));
+		assertTrue((Long) stages[Stage.RENDERING.ordinal()].get("count") > 0);
+
+		metrics.dump(NULL);
+	}
+}